@@ -1,13 +1,46 @@
 package AI;
 import othello.*;
 
+import java.time.Duration;
+
 public interface AI {
 
     public void setStrategy(HeuristicStrategy strategy);
 
-    public Position selectMove(OthelloModel game) throws Exception;
+    public Position selectMove(GameState game) throws Exception;
+
+    public Position selectMove(GameState game, Duration timeLimit) throws Exception;
+
+    /**
+     * a search that only token stops, see StopToken
+     *
+     * @param timeLimit: null to search to the AI's fixed depth
+     */
+    public Position selectMove(GameState game, Duration timeLimit, StopToken token) throws Exception;
 
     public int getNumOfPositionsVisitedLastMove();
 
-    public int[][] getPreviouslyVisitedNodes();
+    /**
+     * counters of the last selectMove, a copy the next search leaves alone
+     */
+    public SearchStats getLastSearchStats();
+
+    /**
+     * search effort per square during the last move: how often a move
+     * to each square was searched, indexed by square (see Board.square)
+     */
+    public int[] getSearchHeatmap();
+
+    /**
+     * abort a running search from another thread;
+     * selectMove returns early with the best move found so far.
+     * A search that has not started yet is not stopped, use a
+     * StopToken for that
+     */
+    public void stop();
+
+    /**
+     * report every finished iteration of a search, null for none
+     */
+    public void setSearchListener(SearchListener listener);
 }
@@ -0,0 +1,178 @@
+package AI;
+
+import othello.GameState;
+import othello.OthelloModel;
+import othello.Position;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * AsyncAI: runs the searches of an AI on a background thread
+ *
+ * selectMove takes a copy of the game on the calling thread and returns
+ * at once with a future of the move. Searches run one after the other
+ * on a single daemon thread, so the AI itself is never used by two
+ * threads at the same time. Every search gets its own StopToken when it
+ * is queued, so cancel() stops the running search and every pending one
+ * however far they got; their futures complete with a
+ * CancellationException and dependent actions are skipped.
+ *
+ * A MiniMaxAlphaBetaAI can also ponder on the same thread while the
+ * opponent thinks, see MiniMaxAlphaBetaAI.ponder. Change the strategy
+ * through setStrategy here, not on the AI, so that it is never changed
+ * in the middle of a search or of pondering.
+ */
+public class AsyncAI {
+
+    private final AI ai;
+    private final ExecutorService searchThread;
+
+    // futures that were not done when last looked at and the tokens
+    // that stop them, guarded by this
+    private final Map<CompletableFuture<Position>, StopToken> searches;
+
+    // pondering in progress and its token or null, guarded by this
+    private CompletableFuture<Void> pondering;
+    private StopToken ponderToken;
+
+    public AsyncAI(AI ai) {
+        this.ai = ai;
+        searchThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ai-search");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        searches = new LinkedHashMap<CompletableFuture<Position>, StopToken>();
+    }
+
+    public AI getAI() {
+        return ai;
+    }
+
+    public CompletableFuture<Position> selectMove(OthelloModel game) throws Exception {
+        return selectMove(game, null);
+    }
+
+    /**
+     * @param timeLimit: null to search to the AI's fixed depth
+     */
+    public synchronized CompletableFuture<Position> selectMove(OthelloModel game,
+                                                               final Duration timeLimit) throws Exception {
+        final GameState copy = game.copyState();
+        final StopToken token = new StopToken();
+
+        // a real search always goes before pondering
+        stopPondering();
+
+        CompletableFuture<Position> search = CompletableFuture.supplyAsync(new Supplier<Position>() {
+            @Override
+            public Position get() {
+                try {
+                    return ai.selectMove(copy, timeLimit, token);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, searchThread);
+
+        searches.put(search, token);
+        return search;
+    }
+
+    /**
+     * give the AI a new strategy on the search thread, after the searches
+     * that are already queued; pondering, which used the old one, stops
+     */
+    public synchronized void setStrategy(final HeuristicStrategy strategy) {
+        stopPondering();
+        searchThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                ai.setStrategy(strategy);
+            }
+        });
+    }
+
+    /**
+     * let the AI think about the replies to the opponent's moves until
+     * stopPondering, selectMove or cancel is called; game has the
+     * opponent to move. Start it after a search, not during one.
+     * Does nothing for AIs that can't ponder.
+     */
+    public synchronized void ponder(OthelloModel game) throws Exception {
+        if (!(ai instanceof MiniMaxAlphaBetaAI))
+            return;
+
+        final MiniMaxAlphaBetaAI ponderingAI = (MiniMaxAlphaBetaAI)ai;
+        final GameState copy = game.copyState();
+        final StopToken token = new StopToken();
+
+        stopPondering();
+
+        ponderToken = token;
+        pondering = CompletableFuture.runAsync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ponderingAI.ponder(copy, token);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }
+        }, searchThread);
+    }
+
+    /**
+     * end pondering, the next search starts as soon as it returns
+     */
+    public synchronized void stopPondering() {
+        if (pondering != null) {
+            pondering.cancel(false);
+            ponderToken.stop();
+            pondering = null;
+            ponderToken = null;
+        }
+    }
+
+    /**
+     * true while a search is running or waiting to run, pondering
+     * doesn't count
+     */
+    public synchronized boolean isSearching() {
+        Iterator<CompletableFuture<Position>> it = searches.keySet().iterator();
+        while (it.hasNext())
+            if (it.next().isDone())
+                it.remove();
+
+        return !searches.isEmpty();
+    }
+
+    /**
+     * stop the running search and drop the pending ones
+     */
+    public synchronized void cancel() {
+        for (Map.Entry<CompletableFuture<Position>, StopToken> search : searches.entrySet()) {
+            search.getKey().cancel(false);
+            search.getValue().stop();
+        }
+        searches.clear();
+        stopPondering();
+    }
+
+    public void shutdown() {
+        cancel();
+        searchThread.shutdownNow();
+    }
+}
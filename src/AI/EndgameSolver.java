@@ -0,0 +1,341 @@
+package AI;
+
+import othello.BitBoard;
+import othello.Field;
+import othello.NarrowBoard;
+
+/**
+ * EndgameSolver: perfect play for the last empty squares
+ *
+ * Searches the game to the very end and returns the exact final disc
+ * differential (own pieces minus opponent pieces) for the player to
+ * move, or only win / draw / loss which is a lot faster because the
+ * window never opens beyond [-1, 1].
+ *
+ * Works directly on the bit masks of boards up to 8 by 8. While many squares are empty the moves
+ * are ordered fastest-first (fewest replies for the opponent), later by
+ * parity (moves into quadrants with an odd number of empties first, so
+ * that the player gets the last move there). The last two empties are
+ * solved without generating moves at all.
+ *
+ * The time grows about threefold with every empty square, so a solve
+ * can be stopped like a search: by its StopToken or at a deadline.
+ */
+public class EndgameSolver {
+
+    public enum Mode {
+        EXACT,          // final disc differential
+        WIN_LOSS_DRAW   // 1, 0 or -1
+    }
+
+    // below this many empties parity ordering is cheaper than fastest-first
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+
+    private static final int INFINITY = BitBoard.SQUARES + 1;
+
+    // nodes solved between two looks at the token and the clock
+    private static final int STOP_CHECK_INTERVAL = 1024;
+
+    private static final long[] QUADRANTS = new long[4];
+
+    static {
+        for (int x = 0; x < BitBoard.SIZE; x++)
+            for (int y = 0; y < BitBoard.SIZE; y++)
+                QUADRANTS[(x / 4) * 2 + (y / 4)] |= BitBoard.bit(x, y);
+    }
+
+    // one move and key buffer per number of empties
+    private int[][] moveLists;
+    private int[][] keyLists;
+
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private int score;
+
+    // stopping the running solve
+    private StopToken token;
+    private boolean timed;
+    private long deadline;
+    private int nodesUntilStopCheck;
+    private boolean aborted;
+
+    public EndgameSolver() {
+        moveLists = new int[BitBoard.SQUARES + 1][BitBoard.SQUARES];
+        keyLists = new int[BitBoard.SQUARES + 1][BitBoard.SQUARES];
+    }
+
+    /**
+     * solve the position for the given player
+     *
+     * @return the best move as square index, -1 if the player can't move
+     */
+    public int findBestMove(NarrowBoard board, Field player, Mode mode) {
+        return findBestMove(board, player, mode, new StopToken(), false, 0);
+    }
+
+    /**
+     * the same, but give up once token is stopped or, if timed, at the
+     * deadline (a System.nanoTime value); see isAborted
+     */
+    public int findBestMove(NarrowBoard board, Field player, Mode mode,
+                            StopToken token, boolean timed, long deadline) {
+        this.token = token;
+        this.timed = timed;
+        this.deadline = deadline;
+        nodesUntilStopCheck = STOP_CHECK_INTERVAL;
+        aborted = false;
+
+        Field opponent = (player == Field.BLACK) ? Field.WHITE : Field.BLACK;
+        long own = board.getPieces(player);
+        long opp = board.getPieces(opponent);
+        long empty = board.getEmpty();
+
+        int alpha = (mode == Mode.EXACT) ? -INFINITY : -1;
+        int beta = (mode == Mode.EXACT) ? INFINITY : 1;
+
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        score = finalScore(own, opp);
+
+        int empties = Long.bitCount(empty);
+        int[] moves = moveLists[empties];
+        int nrOfMoves = orderMoves(own, opp, empty, moves, keyLists[empties]);
+        int bestMove = -1;
+
+        for (int i = 0; i < nrOfMoves && alpha < beta; i++) {
+            int square = moves[i];
+            long flips = BitBoard.flips(own, opp, square);
+            long placed = flips | (1L << square);
+
+            int value = -solve(opp & ~flips, own | placed, empty & ~placed, -beta, -alpha);
+            if (aborted)
+                return -1;
+
+            if (value > alpha || bestMove == -1) {
+                bestMove = square;
+                score = value;
+                alpha = Math.max(alpha, value);
+            }
+        }
+
+        if (mode == Mode.WIN_LOSS_DRAW)
+            score = Integer.signum(score);
+
+        return bestMove;
+    }
+
+    /**
+     * whether the last findBestMove was stopped before it finished; its
+     * move and score are of no use then
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * score of the last findBestMove, for the player who moved
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * positions searched by the last findBestMove
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * positions of the last findBestMove left early because a move was
+     * good enough, see SearchStats
+     */
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * those of the cut-offs caused by the first move tried
+     */
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * negamax alpha-beta (fail-soft) for the player owning own
+     */
+    private int solve(long own, long opp, long empty, int alpha, int beta) {
+        nodes++;
+        if (isStopped())
+            return 0;
+
+        int empties = Long.bitCount(empty);
+        if (empties == 2)
+            return solveTwo(own, opp, empty, alpha, beta);
+        else if (empties == 1)
+            return solveOne(own, opp, Long.numberOfTrailingZeros(empty));
+        else if (empties == 0)
+            return finalScore(own, opp);
+
+        int[] moves = moveLists[empties];
+        int nrOfMoves = orderMoves(own, opp, empty, moves, keyLists[empties]);
+
+        if (nrOfMoves == 0) {
+            if (BitBoard.moves(opp, own, empty) == 0)
+                return finalScore(own, opp);
+
+            return -solve(opp, own, empty, -beta, -alpha);
+        }
+
+        int best = -INFINITY;
+        for (int i = 0; i < nrOfMoves; i++) {
+            int square = moves[i];
+            long flips = BitBoard.flips(own, opp, square);
+            long placed = flips | (1L << square);
+
+            int value = -solve(opp & ~flips, own | placed, empty & ~placed, -beta, -alpha);
+            if (aborted)
+                return 0;
+
+            if (value > best) {
+                best = value;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        cutoffs++;
+                        if (i == 0)
+                            firstMoveCutoffs++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * two empties a and b: try both orders for the player to move,
+     * then for the opponent if the player has to pass
+     */
+    private int solveTwo(long own, long opp, long empty, int alpha, int beta) {
+        int a = Long.numberOfTrailingZeros(empty);
+        int b = 63 - Long.numberOfLeadingZeros(empty);
+
+        int best = -INFINITY;
+
+        long flips = BitBoard.flips(own, opp, a);
+        if (flips != 0) {
+            nodes++;
+            best = -solveOne(opp & ~flips, own | flips | (1L << a), b);
+            if (best >= beta) {
+                cutoffs++;
+                firstMoveCutoffs++;
+                return best;
+            }
+        }
+
+        flips = BitBoard.flips(own, opp, b);
+        if (flips != 0) {
+            nodes++;
+            best = Math.max(best, -solveOne(opp & ~flips, own | flips | (1L << b), a));
+        }
+
+        if (best != -INFINITY)
+            return best;
+
+        // pass; the opponent picks the square that is worst for us
+        int worst = INFINITY;
+
+        flips = BitBoard.flips(opp, own, a);
+        if (flips != 0) {
+            nodes++;
+            worst = solveOne(own & ~flips, opp | flips | (1L << a), b);
+        }
+
+        flips = BitBoard.flips(opp, own, b);
+        if (flips != 0) {
+            nodes++;
+            worst = Math.min(worst, solveOne(own & ~flips, opp | flips | (1L << b), a));
+        }
+
+        if (worst != INFINITY)
+            return worst;
+
+        return finalScore(own, opp);
+    }
+
+    /**
+     * the last empty square: whoever can move there does
+     */
+    private int solveOne(long own, long opp, int square) {
+        nodes++;
+
+        long flips = BitBoard.flips(own, opp, square);
+        if (flips != 0)
+            return finalScore(own | flips | (1L << square), opp & ~flips);
+
+        flips = BitBoard.flips(opp, own, square);
+        if (flips != 0)
+            return finalScore(own & ~flips, opp | flips | (1L << square));
+
+        return finalScore(own, opp);
+    }
+
+    private boolean isStopped() {
+        if (--nodesUntilStopCheck <= 0) {
+            nodesUntilStopCheck = STOP_CHECK_INTERVAL;
+            if (token.isStopped() || (timed && System.nanoTime() - deadline > 0))
+                aborted = true;
+        }
+        return aborted;
+    }
+
+    private static int finalScore(long own, long opp) {
+        return Long.bitCount(own) - Long.bitCount(opp);
+    }
+
+    /**
+     * collect and sort the moves of own, best first
+     *
+     * @return number of moves
+     */
+    private int orderMoves(long own, long opp, long empty, int[] moves, int[] keys) {
+        long legal = BitBoard.moves(own, opp, empty);
+        int empties = Long.bitCount(empty);
+
+        int oddQuadrants = 0;
+        for (int q = 0; q < QUADRANTS.length; q++)
+            if ((Long.bitCount(empty & QUADRANTS[q]) & 1) != 0)
+                oddQuadrants |= 1 << q;
+
+        int count = 0;
+        while (legal != 0) {
+            int square = Long.numberOfTrailingZeros(legal);
+            legal &= legal - 1;
+
+            int quadrant = (BitBoard.getX(square) / 4) * 2 + (BitBoard.getY(square) / 4);
+            int key = ((oddQuadrants >> quadrant) & 1) == 0 ? 1 : 0;
+
+            if (empties > FASTEST_FIRST_EMPTIES) {
+                // fastest-first: fewest opponent replies, parity breaks ties
+                long flips = BitBoard.flips(own, opp, square);
+                long placed = flips | (1L << square);
+                key += 2 * Long.bitCount(BitBoard.moves(opp & ~flips, own | placed, empty & ~placed));
+            }
+
+            int j = count++;
+            while (j > 0 && keys[j - 1] > key) {
+                moves[j] = moves[j - 1];
+                keys[j] = keys[j - 1];
+                j--;
+            }
+            moves[j] = square;
+            keys[j] = key;
+        }
+
+        return count;
+    }
+}
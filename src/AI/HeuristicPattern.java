@@ -0,0 +1,370 @@
+package AI;
+
+import othello.BitBoard;
+import othello.Board;
+import othello.Field;
+import othello.NarrowBoard;
+import othello.SquareWeights;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HeuristicPattern: evaluation by table lookups, Logistello style
+ *
+ * The board is covered by patterns: the lines next to the edges, the
+ * diagonals, the edges with their X-squares and the corner regions.
+ * The contents of a pattern (empty, own or opponent piece per square)
+ * read as a base 3 number index a table of weights, and the score is
+ * the sum of the lookups. All rotations and mirror images of a pattern
+ * share one table. There is a set of tables per game phase, chosen by
+ * how full the board is.
+ *
+ * The weights come from a binary file, written by tools.Tuner:
+ *
+ *   int    magic ("OPW1")
+ *   int    number of phases
+ *   int    number of patterns
+ *   byte   squares of every pattern, which have to match PATTERNS
+ *   short  weights, phase by phase and pattern by pattern, 3^squares each
+ *
+ * Without a file (or with a broken one) the weights are derived from
+ * SquareWeights.CLASSIC, which scores like the weighted positions term
+ * of HeuristicUtility.
+ *
+ * The patterns are laid out on the 8 by 8 board, so only boards of
+ * exactly that size can be evaluated; any other size is refused with an
+ * IllegalArgumentException. Holes on an 8 by 8 board are fine.
+ */
+public class HeuristicPattern implements HeuristicStrategy {
+
+    public static final String ERR_BOARD_SIZE
+            = "Patterns can only evaluate an 8 by 8 board";
+
+    private static final int MAGIC = 0x4F505731; // "OPW1"
+
+    public static final int DEFAULT_PHASES = 10;
+
+    // where tools.Tuner writes its weights by default
+    public static final String DEFAULT_FILE = "pattern.weights";
+
+    // squares (x, y) of one orientation of every pattern
+    private static final int[][][] PATTERNS = {
+            line(1, 0, 0, 1, 8),                                     // second line
+            line(2, 0, 0, 1, 8),                                     // third line
+            line(3, 0, 0, 1, 8),                                     // fourth line
+            line(0, 0, 1, 1, 8),                                     // main diagonal
+            line(0, 1, 1, 1, 7),
+            line(0, 2, 1, 1, 6),
+            line(0, 3, 1, 1, 5),
+            line(0, 4, 1, 1, 4),
+            {{0, 0}, {0, 1}, {0, 2}, {0, 3}, {0, 4}, {0, 5}, {0, 6}, {0, 7},
+             {1, 1}, {1, 6}},                                        // edge and X-squares
+            {{0, 0}, {0, 1}, {0, 2}, {1, 0}, {1, 1}, {1, 2},
+             {2, 0}, {2, 1}, {2, 2}},                                // 3x3 corner
+            {{0, 0}, {0, 1}, {0, 2}, {0, 3}, {0, 4},
+             {1, 0}, {1, 1}, {1, 2}, {1, 3}, {1, 4}}                 // 2x5 corner
+    };
+
+    // every placement of the patterns on the board
+    private static final int[][] INSTANCES;
+    // offset of the table of each placement within a phase
+    private static final int[] INSTANCE_OFFSETS;
+    // offset of the table of each pattern within a phase
+    private static final int[] PATTERN_OFFSETS;
+    public static final int TABLE_SIZE;
+
+    static {
+        PATTERN_OFFSETS = new int[PATTERNS.length];
+        List<int[]> instances = new ArrayList<int[]>();
+        List<Integer> offsets = new ArrayList<Integer>();
+
+        int size = 0;
+        for (int p = 0; p < PATTERNS.length; p++) {
+            PATTERN_OFFSETS[p] = size;
+
+            // the same set of squares in another order is the same placement
+            Set<Long> placed = new HashSet<Long>();
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                int[] squares = new int[PATTERNS[p].length];
+                long mask = 0;
+                for (int i = 0; i < squares.length; i++) {
+                    long bit = BitBoard.transform(BitBoard.bit(PATTERNS[p][i][0], PATTERNS[p][i][1]), symmetry);
+                    squares[i] = Long.numberOfTrailingZeros(bit);
+                    mask |= bit;
+                }
+                if (placed.add(mask)) {
+                    instances.add(squares);
+                    offsets.add(size);
+                }
+            }
+
+            size += power3(PATTERNS[p].length);
+        }
+
+        TABLE_SIZE = size;
+        INSTANCES = instances.toArray(new int[instances.size()][]);
+        INSTANCE_OFFSETS = new int[offsets.size()];
+        for (int i = 0; i < INSTANCE_OFFSETS.length; i++)
+            INSTANCE_OFFSETS[i] = offsets.get(i);
+    }
+
+    // weights read from a file, shared by all strategies using that file
+    private static final Map<Path, short[][]> files = new ConcurrentHashMap<Path, short[][]>();
+    private static short[][] classicWeights;
+
+    private final short[][] weights;
+
+    private Field computer;
+    private Field opponent;
+
+    /**
+     * weights derived from SquareWeights.CLASSIC
+     */
+    public HeuristicPattern() {
+        this(classicWeights());
+    }
+
+    /**
+     * weights of the given file, the derived ones if it is missing or broken
+     */
+    public HeuristicPattern(Path weightsFile) {
+        this(cachedWeights(weightsFile));
+    }
+
+    /**
+     * @param weights: TABLE_SIZE weights per phase
+     */
+    public HeuristicPattern(short[][] weights) {
+        this.weights = weights;
+
+        // default
+        this.computer = Field.WHITE;
+        this.opponent = Field.BLACK;
+    }
+
+    @Override
+    public void setComputerAndOpponent(Field computer, Field opponent) {
+        this.computer = computer;
+        this.opponent = opponent;
+    }
+
+    @Override
+    public HeuristicStrategy copy() {
+        HeuristicStrategy copy = new HeuristicPattern(weights);
+        copy.setComputerAndOpponent(computer, opponent);
+        return copy;
+    }
+
+    /**
+     * Board.getBoard shows empty squares as holes, so holes can't be
+     * told apart here and count as empty
+     */
+    @Override
+    public int evaluateBoard(Field[][] board) {
+        checkSize(board.length, board.length > 0 ? board[0].length : 0);
+
+        long own = 0;
+        long opp = 0;
+        int squares = 0;
+        for (int x = 0; x < board.length; x++) {
+            for (int y = 0; y < board[x].length; y++) {
+                if (board[x][y] == computer)
+                    own |= BitBoard.bit(x, y);
+                else if (board[x][y] == opponent)
+                    opp |= BitBoard.bit(x, y);
+                squares++;
+            }
+        }
+
+        return evaluate(own, opp, phase(Long.bitCount(own | opp), squares, weights.length));
+    }
+
+    @Override
+    public int evaluateBoard(Board board) {
+        checkSize(board.width, board.height);
+
+        // an 8 by 8 board is always narrow
+        NarrowBoard narrow = (NarrowBoard)board;
+        long own = narrow.getPieces(computer);
+        long opp = narrow.getPieces(opponent);
+        int squares = Long.bitCount(own | opp | narrow.getEmpty());
+
+        return evaluate(own, opp, phase(Long.bitCount(own | opp), squares, weights.length));
+    }
+
+    private int evaluate(long own, long opp, int phase) {
+        short[] table = weights[phase];
+
+        int score = 0;
+        for (int i = 0; i < INSTANCES.length; i++)
+            score += table[INSTANCE_OFFSETS[i] + index(INSTANCES[i], own, opp)];
+
+        return score;
+    }
+
+    /**
+     * squares read as a base 3 number: 0 empty, 1 own, 2 opponent;
+     * holes and squares off the board count as empty
+     */
+    private static int index(int[] squares, long own, long opp) {
+        int index = 0;
+        for (int square : squares)
+            index = 3 * index + (int)((own >>> square) & 1) + 2 * (int)((opp >>> square) & 1);
+        return index;
+    }
+
+    /**
+     * position within a phase of the weight of every pattern placement,
+     * for fitting the weights
+     *
+     * @param features: buffer of length getNumOfFeatures
+     */
+    public static void features(long own, long opp, int[] features) {
+        for (int i = 0; i < INSTANCES.length; i++)
+            features[i] = INSTANCE_OFFSETS[i] + index(INSTANCES[i], own, opp);
+    }
+
+    public static int getNumOfFeatures() {
+        return INSTANCES.length;
+    }
+
+    /**
+     * @param discs: pieces on the board
+     * @param squares: squares of the board that are not holes
+     */
+    public static int phase(int discs, int squares, int phases) {
+        return Math.min(phases - 1, discs * phases / (squares + 1));
+    }
+
+    /** WEIGHTS FILE **/
+
+    /**
+     * read the weights of the given file now rather than with the first
+     * strategy that uses it, which may be in the middle of a search
+     */
+    public static void preload(Path weightsFile) {
+        cachedWeights(weightsFile);
+    }
+
+    private static short[][] cachedWeights(Path file) {
+        Path key = file.toAbsolutePath().normalize();
+        short[][] weights = files.get(key);
+        if (weights == null) {
+            try {
+                weights = readWeights(key);
+            } catch (IOException e) {
+                weights = classicWeights();
+            }
+            files.putIfAbsent(key, weights);
+            weights = files.get(key);
+        }
+        return weights;
+    }
+
+    public static short[][] readWeights(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a weights file: " + file);
+
+            int phases = in.readInt();
+            if (phases < 1 || in.readInt() != PATTERNS.length)
+                throw new IOException("Patterns don't match: " + file);
+            for (int[][] pattern : PATTERNS)
+                if (in.readByte() != pattern.length)
+                    throw new IOException("Patterns don't match: " + file);
+
+            short[][] weights = new short[phases][TABLE_SIZE];
+            for (short[] phase : weights)
+                for (int i = 0; i < TABLE_SIZE; i++)
+                    phase[i] = in.readShort();
+
+            return weights;
+        }
+    }
+
+    public static void writeWeights(Path file, short[][] weights) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(weights.length);
+            out.writeInt(PATTERNS.length);
+            for (int[][] pattern : PATTERNS)
+                out.writeByte(pattern.length);
+
+            for (short[] phase : weights)
+                for (short weight : phase)
+                    out.writeShort(weight);
+        }
+
+        // strategies opened on this file from now on see the new weights
+        files.remove(file.toAbsolutePath().normalize());
+    }
+
+    /**
+     * weights that add up to SquareWeights.CLASSIC times 16: every square
+     * gets its classic value, split evenly over the placements covering it
+     */
+    public static synchronized short[][] classicWeights() {
+        if (classicWeights != null)
+            return classicWeights;
+
+        int[] coverage = new int[BitBoard.SQUARES];
+        for (int[] squares : INSTANCES)
+            for (int square : squares)
+                coverage[square]++;
+
+        short[] table = new short[TABLE_SIZE];
+        for (int p = 0; p < PATTERNS.length; p++) {
+            int[][] pattern = PATTERNS[p];
+            for (int index = 0; index < power3(pattern.length); index++) {
+                float weight = 0;
+                int rest = index;
+                for (int i = pattern.length - 1; i >= 0; i--, rest /= 3) {
+                    int x = pattern[i][0];
+                    int y = pattern[i][1];
+                    int sign = (rest % 3 == 1) ? 1 : (rest % 3 == 2) ? -1 : 0;
+                    weight += 16f * sign * SquareWeights.CLASSIC[x][y] / coverage[BitBoard.square(x, y)];
+                }
+                table[PATTERN_OFFSETS[p] + index] = (short)Math.round(weight);
+            }
+        }
+
+        classicWeights = new short[DEFAULT_PHASES][];
+        for (int phase = 0; phase < DEFAULT_PHASES; phase++)
+            classicWeights[phase] = table;
+
+        return classicWeights;
+    }
+
+    /** HELPER METHODS **/
+
+    private static void checkSize(int width, int height) {
+        if (width != BitBoard.SIZE || height != BitBoard.SIZE)
+            throw new IllegalArgumentException(ERR_BOARD_SIZE);
+    }
+
+    private static int[][] line(int x, int y, int dx, int dy, int length) {
+        int[][] squares = new int[length][];
+        for (int i = 0; i < length; i++)
+            squares[i] = new int[] {x + i * dx, y + i * dy};
+        return squares;
+    }
+
+    private static int power3(int exponent) {
+        int power = 1;
+        for (int i = 0; i < exponent; i++)
+            power *= 3;
+        return power;
+    }
+}
@@ -1,5 +1,6 @@
 package AI;
 
+import othello.Board;
 import othello.Field;
 
 public class HeuristicPieceCounter implements HeuristicStrategy {
@@ -26,6 +27,13 @@ public class HeuristicPieceCounter implements HeuristicStrategy {
         this.opponent = opponent;
     }
 
+    @Override
+    public HeuristicStrategy copy() {
+        HeuristicStrategy copy = new HeuristicPieceCounter();
+        copy.setComputerAndOpponent(computer, opponent);
+        return copy;
+    }
+
     /**
      * evaluate the board by determining the ratio
      * of computer and opponent pieces on the board
@@ -50,4 +58,9 @@ public class HeuristicPieceCounter implements HeuristicStrategy {
         return computerCount - opponentCount;
     }
 
+    @Override
+    public int evaluateBoard(Board board) {
+        return board.countPieces(computer) - board.countPieces(opponent);
+    }
+
 }
@@ -0,0 +1,126 @@
+package AI;
+
+import othello.BitBoard;
+import othello.Board;
+import othello.Field;
+import othello.NarrowBoard;
+import othello.WideBoard;
+
+/**
+ * HeuristicStability: mobility, frontier and stable discs
+ *
+ * Every term is computed with a handful of shifts and masks on the
+ * bitboards, see BitBoard.adjacent and BitBoard.stable. Boards larger
+ * than 8 by 8 get the same terms from the masks of the WideBoard.
+ */
+public class HeuristicStability implements HeuristicStrategy {
+
+    private static final int MOBILITY_WEIGHT = 80;
+    private static final int POTENTIAL_MOBILITY_WEIGHT = 40;
+    private static final int FRONTIER_WEIGHT = 40;
+    private static final int STABILITY_WEIGHT = 400;
+
+    private Field computer;
+    private Field opponent;
+
+    /**
+     * constructor
+     *
+     * initialize computer and opponent pieces
+     */
+    public HeuristicStability() {
+
+        // default
+        this.computer = Field.WHITE;
+        this.opponent = Field.BLACK;
+    }
+
+    @Override
+    public void setComputerAndOpponent(Field computer, Field opponent) {
+        this.computer = computer;
+        this.opponent = opponent;
+    }
+
+    @Override
+    public HeuristicStrategy copy() {
+        HeuristicStrategy copy = new HeuristicStability();
+        copy.setComputerAndOpponent(computer, opponent);
+        return copy;
+    }
+
+    /**
+     * Board.getBoard shows empty squares as holes, so holes can't be
+     * told apart here and count as empty
+     */
+    @Override
+    public int evaluateBoard(Field[][] board) {
+        int width = board.length;
+        int height = (width == 0) ? 0 : board[0].length;
+        if (width > BitBoard.SIZE || height > BitBoard.SIZE) {
+            WideBoard wide = new WideBoard(width, height);
+            for (int x = 0; x < width; x++)
+                for (int y = 0; y < height; y++)
+                    wide.set(x, y, (board[x][y] == Field.HOLE) ? null : board[x][y]);
+            return evaluate(wide);
+        }
+
+        long own = 0;
+        long opp = 0;
+        long holes = BitBoard.offBoardMask(width, height);
+        for (int x = 0; x < board.length; x++) {
+            for (int y = 0; y < board[x].length; y++) {
+                if (board[x][y] == computer)
+                    own |= BitBoard.bit(x, y);
+                else if (board[x][y] == opponent)
+                    opp |= BitBoard.bit(x, y);
+            }
+        }
+
+        return evaluate(own, opp, holes);
+    }
+
+    @Override
+    public int evaluateBoard(Board board) {
+        if (board.isWide())
+            return evaluate((WideBoard)board);
+
+        NarrowBoard narrow = (NarrowBoard)board;
+        return evaluate(narrow.getPieces(computer), narrow.getPieces(opponent), narrow.getHoles());
+    }
+
+    private int evaluate(WideBoard board) {
+        int mobility = ratio(board.countMoves(computer), board.countMoves(opponent));
+        int potentialMobility = ratio(board.countEmptyAround(opponent),
+                                      board.countEmptyAround(computer));
+        int frontierDiscs = ratio(board.countFrontier(opponent), board.countFrontier(computer));
+        int stableDiscs = board.countStableDifference(computer);
+
+        return (MOBILITY_WEIGHT * mobility) + (POTENTIAL_MOBILITY_WEIGHT * potentialMobility)
+                + (FRONTIER_WEIGHT * frontierDiscs) + (STABILITY_WEIGHT * stableDiscs);
+    }
+
+    private int evaluate(long own, long opp, long holes) {
+        long empty = ~(own | opp | holes);
+
+        int mobility = ratio(Long.bitCount(BitBoard.moves(own, opp, empty)),
+                             Long.bitCount(BitBoard.moves(opp, own, empty)));
+        int potentialMobility = ratio(Long.bitCount(empty & BitBoard.adjacent(opp)),
+                                      Long.bitCount(empty & BitBoard.adjacent(own)));
+        long frontier = BitBoard.adjacent(empty);
+        int frontierDiscs = ratio(Long.bitCount(opp & frontier), Long.bitCount(own & frontier));
+        long stable = BitBoard.stable(own, opp, holes);
+        int stableDiscs = Long.bitCount(stable & own) - Long.bitCount(stable & opp);
+
+        return (MOBILITY_WEIGHT * mobility) + (POTENTIAL_MOBILITY_WEIGHT * potentialMobility)
+                + (FRONTIER_WEIGHT * frontierDiscs) + (STABILITY_WEIGHT * stableDiscs);
+    }
+
+    /**
+     * 100 * (max - min) / (max + min), 0 if both are 0
+     */
+    private int ratio(int max, int min) {
+        if (max + min == 0)
+            return 0;
+        return 100 * (max - min) / (max + min);
+    }
+}
@@ -1,10 +1,23 @@
 package AI;
 
+import othello.Board;
 import othello.Field;
 
 public interface HeuristicStrategy {
 
     public void setComputerAndOpponent(Field computer, Field opponent);
 
+    /**
+     * a strategy that evaluates the same way, for another thread;
+     * it may share read-only tables but nothing else
+     */
+    public HeuristicStrategy copy();
+
     public int evaluateBoard(Field[][] board);
+
+    /**
+     * same as evaluateBoard(board.getBoard()), but using the bitboards
+     * and incrementally updated totals of the board directly
+     */
+    public int evaluateBoard(Board board);
 }
@@ -1,20 +1,11 @@
 package AI;
 
+import othello.Board;
 import othello.Field;
+import othello.SquareWeights;
 
 public class HeuristicUtility implements HeuristicStrategy {
 
-    private static final int[][] positionScore =
-            new int[][] {{20, -3, 11,  8,  8, 11, -3, 20},
-                         {-3, -7, -4,  1,  1, -4, -7, -3},
-                         {11, -4,  2,  2,  2,  2, -4, 11},
-                         {8,   1,  2, -3, -3,  2,  1,  8},
-                         {8,   1,  2, -3, -3,  2,  1,  8},
-                         {11, -4,  2,  2,  2,  2, -4, 11},
-                         {-3, -7, -4,  1,  1, -4, -7, -3},
-                         {20, -3, 11,  8,  8, 11, -3, 20}};
-
-
     private Field computer;
     private Field opponent;
 
@@ -36,12 +27,36 @@ public class HeuristicUtility implements HeuristicStrategy {
         this.opponent = opponent;
     }
 
+    @Override
+    public HeuristicStrategy copy() {
+        HeuristicStrategy copy = new HeuristicUtility();
+        copy.setComputerAndOpponent(computer, opponent);
+        return copy;
+    }
+
     @Override
     public int evaluateBoard(Field[][] board) {
         return ( 80 * mobility(board)) + (10 * parity(board)) +
                (800 * capturedCorners(board)) + (10 * weightedPositions(board));
     }
 
+    /**
+     * same terms as above, computed from the bitboards: piece counts and
+     * moves are bit counts, the position weights are kept up to date by
+     * the board itself with every move
+     */
+    @Override
+    public int evaluateBoard(Board board) {
+        int mobility = mobility(board.countMoves(computer), board.countMoves(opponent));
+        int parity = parity(board.countPieces(computer), board.countPieces(opponent));
+        int capturedCorners = capturedCorners(board.countCorners(computer),
+                                              board.countCorners(opponent));
+        int weightedPositions = weightedPositions(board.getPositionWeight(computer),
+                                                  board.getPositionWeight(opponent));
+
+        return (80 * mobility) + (10 * parity) + (800 * capturedCorners) + (10 * weightedPositions);
+    }
+
     /**
      * Parity
      *
@@ -63,6 +78,10 @@ public class HeuristicUtility implements HeuristicStrategy {
             }
         }
 
+        return parity(computerCount, opponentCount);
+    }
+
+    private int parity(int computerCount, int opponentCount) {
         // 100 * (max - min) / (max + min)
         return 100 * (computerCount - opponentCount) / (computerCount + opponentCount);
     }
@@ -83,6 +102,10 @@ public class HeuristicUtility implements HeuristicStrategy {
     private int mobility(Field[][] board) {
         int maxPlayerMoves = numberOfValidMoves(computer, opponent, board);
         int minPlayerMoves = numberOfValidMoves(opponent, computer, board);
+        return mobility(maxPlayerMoves, minPlayerMoves);
+    }
+
+    private int mobility(int maxPlayerMoves, int minPlayerMoves) {
         if(maxPlayerMoves > minPlayerMoves)
             return (100 * maxPlayerMoves)/(maxPlayerMoves + minPlayerMoves);
         else if(maxPlayerMoves < minPlayerMoves)
@@ -101,7 +124,10 @@ public class HeuristicUtility implements HeuristicStrategy {
     private int capturedCorners(Field[][] board) {
         int maxPlayer = numberOfCapturedCorners(computer, board);
         int minPlayer = numberOfCapturedCorners(opponent, board);
+        return capturedCorners(maxPlayer, minPlayer);
+    }
 
+    private int capturedCorners(int maxPlayer, int minPlayer) {
         if (maxPlayer + minPlayer != 0) {
             return 25 * (maxPlayer - minPlayer);
         }
@@ -120,7 +146,10 @@ public class HeuristicUtility implements HeuristicStrategy {
 
         int maxPlayer = getPositionWeights(computer, board);
         int minPlayer = getPositionWeights(opponent, board);
+        return weightedPositions(maxPlayer, minPlayer);
+    }
 
+    private int weightedPositions(int maxPlayer, int minPlayer) {
         if (maxPlayer + minPlayer == 0) return 0;
 
         if (maxPlayer > minPlayer)
@@ -140,7 +169,7 @@ public class HeuristicUtility implements HeuristicStrategy {
         for (int x = 0; x < board.length; x++) {
             for (int y = 0; y < board[0].length; y++) {
                 if (board[x][y] == player)
-                    result += positionScore[x][y];
+                    result += SquareWeights.weight(x, y, board.length, board[0].length);
             }
         }
 
@@ -175,17 +204,21 @@ public class HeuristicUtility implements HeuristicStrategy {
         if (board[startX][startY] != null && board[startX][startY] != Field.HOLE)
             return false;
 
-        Field[] str = new Field[10];
+        int width = board.length;
+        int height = board[startX].length;
+
+        // the longest line from a square reaches the far side of the board
+        Field[] str = new Field[Math.max(width, height) - 1];
         int x, y, dx, dy, ctr;
         for (dy = -1; dy <= 1; dy++)
             for (dx = -1; dx <= 1; dx++)    {
                 // keep going if both velocities are zero
                 if (dy == 0 && dx == 0)
                     continue;
-                for (ctr = 1; ctr < 8; ctr++)   {
+                for (ctr = 1; ctr <= str.length; ctr++)   {
                     x = startX + ctr*dx;
                     y = startY + ctr*dy;
-                    if (x >= 0 && y >= 0 && x<8 && y<8)
+                    if (x >= 0 && y >= 0 && x < width && y < height)
                         str[ctr-1] = board[x][y];
                     else str[ctr-1] = Field.HOLE;
                 }
@@ -196,13 +229,15 @@ public class HeuristicUtility implements HeuristicStrategy {
         return false;
     }
 
+    /**
+     * a line of opponent pieces closed by one of self; anything else,
+     * an empty square, a hole or the side of the board, ends the line
+     */
     private boolean canMove(Field self, Field opp, Field[] str)  {
-        if (str[0] != opp) return false;
-        for (int ctr = 1; ctr < 8; ctr++) {
-            if (str[ctr] == null)
-                return false;
-            if (str[ctr] == self)
-                return true;
+        if (str.length == 0 || str[0] != opp) return false;
+        for (int ctr = 1; ctr < str.length; ctr++) {
+            if (str[ctr] != opp)
+                return str[ctr] == self;
         }
         return false;
     }
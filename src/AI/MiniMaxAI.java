@@ -1,11 +1,11 @@
 package AI;
+import othello.Board;
 import othello.Field;
-import othello.OthelloModel;
+import othello.GameState;
 import othello.Position;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
+import java.time.Duration;
+import java.util.Arrays;
 
 
 /**
@@ -17,20 +17,44 @@ public class MiniMaxAI implements AI {
 
     private static final int MAX_DEPTH = 3;
 
-    private static final int BEST_ROW = 1;
-    private static final int BEST_COL = 2;
+    // a game never lasts longer than there are squares
+    private static final int MAX_PLY = Board.MAX_SQUARES;
 
-    private OthelloModel game;
+    // nodes searched between two looks at the clock
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private GameState game;
 
-    private Stack<OthelloModel> games;
     private HeuristicStrategy evaluate;
-    private ArrayList<int[]> visitedNodes;
+    // moves searched per square, see getSearchHeatmap
+    private int[] heatmap;
+    private SearchStats stats;
+    // copy made when the last search finished, see getLastSearchStats
+    private volatile SearchStats lastStats;
+
+    // one move buffer per ply so that the search doesn't allocate
+    private int[][] moveLists;
+    private int bestMove;
+
+    // time control for iterative deepening
+    private boolean timed;
+    private long deadline;
+    private boolean timeUp;
+    private int nodesUntilTimeCheck;
+    // of the running or last search
+    private volatile StopToken token = new StopToken();
+
+    private SearchListener listener;
 
     private Field computer;
     private Field opponent;
 
     public MiniMaxAI() {
         evaluate = new HeuristicPieceCounter(); // default strategy
+        moveLists = new int[MAX_PLY + 1][Board.MAX_SQUARES];
+        stats = new SearchStats();
+        lastStats = new SearchStats();
+        heatmap = new int[Board.MAX_SQUARES];
     }
 
     @Override
@@ -39,86 +63,180 @@ public class MiniMaxAI implements AI {
     }
 
     @Override
-    public Position selectMove(OthelloModel game) throws Exception {
+    public Position selectMove(GameState game) throws Exception {
+        return selectMove(game, null, new StopToken());
+    }
 
-        visitedNodes = new ArrayList<int[]>();
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit) throws Exception {
+        return selectMove(game, timeLimit, new StopToken());
+    }
 
-        games = new Stack<OthelloModel>();
-        this.game = (OthelloModel)game.clone();
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit, StopToken token) throws Exception {
+        this.token = token;
+        return (timeLimit != null) ? iterate(game, timeLimit) : search(game);
+    }
 
-        int[] bestOption;
+    private Position search(GameState game) throws Exception {
 
-        computer = game.getCurrentPlayer();
-        opponent = game.getOpponentPlayer();
-        evaluate.setComputerAndOpponent(computer, opponent);
+        startSearch(game);
+        timed = false;
+
+        bestMove = -1;
+        miniMax(MAX_DEPTH, 0);
+
+        if (!timeUp) {
+            stats.depth = MAX_DEPTH;
+            reportProgress(MAX_DEPTH, bestMove);
+        }
+
+        lastStats = stats.finish(getClass().getSimpleName());
+        return toPosition(bestMove);
+    }
+
+    /**
+     * iterative deepening: search depth 1, 2, 3, ... until the time
+     * limit is reached and return the best move of the deepest
+     * completed iteration
+     */
+    private Position iterate(GameState game, Duration timeLimit) throws Exception {
+
+        startSearch(game);
+        timed = true;
+        deadline = System.nanoTime() + timeLimit.toNanos();
+
+        int completedMove = -1;
+        int maxDepth = this.game.getBoard().countEmpty();
+
+        for (int depth = 1; depth <= maxDepth && !timeUp; depth++) {
+            bestMove = -1;
+            miniMax(depth, 0);
+
+            if (!timeUp) {
+                completedMove = bestMove;
+                stats.depth = depth;
+                reportProgress(depth, completedMove);
+            }
+        }
+
+        // not even depth 1 finished, fall back to any legal move
+        if (completedMove == -1 && this.game.isRunning()
+                && this.game.generateMoves(moveLists[0]) > 0)
+            completedMove = (bestMove != -1) ? bestMove : moveLists[0][0];
+
+        lastStats = stats.finish(getClass().getSimpleName());
+        return toPosition(completedMove);
+    }
+
+    @Override
+    public void stop() {
+        token.stop();
+    }
 
-        bestOption = miniMax(MAX_DEPTH, computer);
-        return new Position(bestOption[BEST_ROW], bestOption[BEST_COL]);
+    @Override
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
     }
 
     @Override
     public int getNumOfPositionsVisitedLastMove() {
-        return visitedNodes.size();
+        return (int)lastStats.getNodes();
+    }
+
+    @Override
+    public SearchStats getLastSearchStats() {
+        return lastStats;
     }
 
     @Override
-    public int[][] getPreviouslyVisitedNodes() {
-        return visitedNodes.toArray(new int[visitedNodes.size()][]);
+    public int[] getSearchHeatmap() {
+        return heatmap.clone();
     }
 
 
+    private void startSearch(GameState game) throws Exception {
+
+        Arrays.fill(heatmap, 0);
+        stats.start();
+
+        // the search plays and takes back moves on a single copy
+        this.game = new GameState(game);
+
+        computer = game.getCurrentPlayer();
+        opponent = game.getOpponentPlayer();
+        evaluate.setComputerAndOpponent(computer, opponent);
+
+        timeUp = false;
+        nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+    }
+
+    private void reportProgress(int depth, int move) {
+        if (listener != null)
+            listener.searchProgress(depth, toPosition(move), (int)stats.nodes);
+    }
+
+    private Position toPosition(int square) {
+        if (square == -1)
+            return new Position(-1, -1);
+
+        Board board = this.game.getBoard();
+        return new Position(board.getX(square), board.getY(square));
+    }
+
+    private boolean isTimeUp() {
+        if (--nodesUntilTimeCheck <= 0) {
+            nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+            if (token.isStopped() || (timed && System.nanoTime() - deadline > 0))
+                timeUp = true;
+        }
+        return timeUp;
+    }
+
     /**
      * implementation of the recursive MiniMax Algorithm
      * @param depth: how deep the tree we are searching
-     * @param player: the current players turn (computer or opponent)
-     * @return best score along with the row and column the computer should play
+     * @param ply: distance from the root, the best move is recorded at ply 0
+     * @return best score for the player to move (computer or opponent)
      */
-    private int[] miniMax(int depth, Field player) throws Exception {
+    private int miniMax(int depth, int ply) {
+
+        int[] nextMoves = moveLists[ply];
+        int nrOfMoves = game.isRunning() ? game.generateMoves(nextMoves) : 0;
 
-        List<Position> nextMoves = game.getPossibleMoves(player);
+        if (depth == 0 || nrOfMoves == 0) {
+            // Game over or depth reached, evaluate score
+            stats.evaluations++;
+            return evaluate.evaluateBoard(game.getBoard());
+        }
 
         // computer is maximizing; while opponent is minimizing
-        int bestScore = (player == computer) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        boolean maximizing = game.getCurrentPlayer() == computer;
+        int bestScore = maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
         int currentScore;
-        Position bestPosition = new Position(-1, -1);
 
-        if (!game.isRunning() || depth == 0 || nextMoves.isEmpty()) {
-            // Game over or depth reached, evaluate score
-            bestScore = evaluate.evaluateBoard(game.getBoard().getBoard());
-        } else {
-
-            for (Position position : nextMoves) {
-
-                visitedNodes.add(new int[] {position.x, position.y});
-
-                // Try this move for the current "player"
-                // push game to the stack and clone it
-                games.push(game);
-                game = (OthelloModel)game.clone();
-                game.move(position);
-
-                if (player == computer) {  // computer is maximizing player
-                    currentScore = miniMax(depth - 1, opponent)[0];
-                    if (currentScore > bestScore) {
-                        bestScore = currentScore;
-                        bestPosition = position;
-                    }
-
-                } else {  // opponent is minimizing player
-                    currentScore = miniMax(depth - 1, computer)[0];
-                    if (currentScore < bestScore) {
-                        bestScore = currentScore;
-                        bestPosition = position;
-                    }
-                }
-
-                // go to previous clone
-                if (!games.isEmpty())
-                    game = games.pop();
+        for (int i = 0; i < nrOfMoves; i++) {
+            int square = nextMoves[i];
+
+            heatmap[square]++;
+            stats.nodes++;
+
+            // Try this move for the current player and take it back afterwards
+            game.makeMove(square);
+            currentScore = miniMax(depth - 1, ply + 1);
+            game.undoMove();
+
+            if (isTimeUp())
+                return 0;
+
+            if (maximizing ? currentScore > bestScore : currentScore < bestScore) {
+                bestScore = currentScore;
+                if (ply == 0)
+                    bestMove = square;
             }
         }
 
-        return new int[] {bestScore, bestPosition.x, bestPosition.y};
+        return bestScore;
     }
 
 
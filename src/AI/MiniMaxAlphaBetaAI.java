@@ -1,111 +1,617 @@
 package AI;
 
+import othello.Board;
 import othello.Field;
-import othello.OthelloModel;
+import othello.GameState;
+import othello.NarrowBoard;
 import othello.Position;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class MiniMaxAlphaBetaAI implements AI {
 
     private static final int MAX_DEPTH = 3;
 
-    private static final int BEST_ROW = 1;
-    private static final int BEST_COL = 2;
+    // a game never lasts longer than there are squares
+    private static final int MAX_PLY = Board.MAX_SQUARES;
 
-    private OthelloModel game;
+    // nodes searched between two looks at the clock
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    // solve the game exactly from this many empty squares on; every
+    // further empty square makes a solve about three times slower
+    private static final int DEFAULT_ENDGAME_EMPTIES = 12;
+    private static final int MAX_ENDGAME_EMPTIES = 20;
+
+    public static final String ERR_ENDGAME_EMPTIES
+            = "The endgame can be solved from at most " + MAX_ENDGAME_EMPTIES + " empty squares";
+
+    // 2^18 entries, 4 MB
+    private static final int DEFAULT_TABLE_SIZE = 1 << 18;
+
+    // half width of an aspiration window in mean distances of a score
+    // from its guess, at least MIN_ASPIRATION_DELTA, and how much it
+    // grows every time a search falls outside of it
+    private static final int ASPIRATION_WIDTH = 2;
+    private static final int MIN_ASPIRATION_DELTA = 1;
+    private static final int ASPIRATION_GROWTH = 4;
+
+    private GameState game;
 
     private HeuristicStrategy evaluate;
-    private Stack<OthelloModel> games;
-    private ArrayList<int[]> visitedNodes;
+    // moves searched per square, see getSearchHeatmap
+    private int[] heatmap;
+    private SearchStats stats;
+    // copy made when the last search finished, see getLastSearchStats
+    private volatile SearchStats lastStats;
+
+    // scores depend on the strategy and the computer's colour,
+    // the table is cleared whenever one of them changes
+    private TranspositionTable table;
+    private final boolean managesTable;
+    private HeuristicStrategy tableStrategy;
+    private Field tableComputer;
+
+    // one move buffer per ply so that the search doesn't allocate
+    private int[][] moveLists;
+    private MoveOrdering ordering;
+    private int bestMove;
+
+    // principal variation of the running and of the last completed iteration
+    private int[][] pvTable;
+    private int[] pvLength;
+    private int[] previousPv;
+    private int previousPvLength;
+    private boolean followPv;
+
+    // aspiration windows: root score of every completed iteration by
+    // depth, of this and of the previous search, and the mean distance
+    // of a score from its guess; the previous scores and the distance
+    // are only valid for the same strategy and colour
+    private int[] iterationScores;
+    private int[] previousScores;
+    private int scoredDepth;
+    private int firstScoredDepth;
+    private int previousScoresDepth;
+    private int aspirationDelta;
+    private HeuristicStrategy scoreStrategy;
+    private Field scoreComputer;
+
+    // time control for iterative deepening
+    private boolean timed;
+    private long deadline;
+    private boolean timeUp;
+    private int nodesUntilTimeCheck;
+    // of the running or last search
+    private volatile StopToken token = new StopToken();
+    private int completedDepth;
+
+    // moves found while pondering, by hash of the position; like the
+    // strategy only used on the thread that searches, see AsyncAI
+    private Map<Long, Position> ponderMoves;
+
+    private SearchListener listener;
+    // the listener follows real searches only, not pondering
+    private boolean pondering;
+
+    // known moves for the opening, null if there is no book
+    private OpeningBook openingBook;
+
+    // perfect play once few squares are left
+    private EndgameSolver endgameSolver;
+    private EndgameSolver.Mode endgameMode;
+    private int endgameEmpties;
 
     private Field computer;
     private Field opponent;
 
     public MiniMaxAlphaBetaAI() {
+        this(new TranspositionTable(DEFAULT_TABLE_SIZE,
+                TranspositionTable.Replacement.DEPTH_PREFERRED));
+    }
+
+    /**
+     * @param table: transposition table, sized to the memory budget
+     */
+    public MiniMaxAlphaBetaAI(TranspositionTable table) {
+        this(table, true);
+    }
+
+    /**
+     * @param managesTable: false for helpers of a parallel search, whose
+     *                      table is cleared and aged by their owner
+     */
+    MiniMaxAlphaBetaAI(TranspositionTable table, boolean managesTable) {
+        this.managesTable = managesTable;
         evaluate = new HeuristicPieceCounter(); // default strategy
+        moveLists = new int[MAX_PLY + 1][Board.MAX_SQUARES];
+        ordering = new MoveOrdering(MAX_PLY);
+        pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+        pvLength = new int[MAX_PLY + 1];
+        previousPv = new int[MAX_PLY + 1];
+        iterationScores = new int[MAX_PLY + 1];
+        previousScores = new int[MAX_PLY + 1];
+        this.table = table;
+        endgameSolver = new EndgameSolver();
+        endgameMode = EndgameSolver.Mode.EXACT;
+        endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+        ponderMoves = new HashMap<Long, Position>();
+        stats = new SearchStats();
+        lastStats = new SearchStats();
+        heatmap = new int[Board.MAX_SQUARES];
     }
 
+    /**
+     * call it on the thread that searches, the moves found while
+     * pondering with the old strategy are dropped
+     */
     @Override
     public void setStrategy(HeuristicStrategy strategy) {
         evaluate = strategy;
+        ponderMoves.clear();
+    }
+
+    /**
+     * solve positions with at most this many empty squares exactly
+     * instead of searching them with the heuristic; 0 turns it off.
+     * A solve that is stopped or runs out of time falls back to the
+     * heuristic, but without a time limit nothing cuts it short, and
+     * from 20 empty squares on it can take minutes
+     */
+    public void setEndgameEmpties(int empties) {
+        if (empties > MAX_ENDGAME_EMPTIES)
+            throw new IllegalArgumentException(ERR_ENDGAME_EMPTIES);
+        endgameEmpties = empties;
+    }
+
+    public void setEndgameMode(EndgameSolver.Mode mode) {
+        endgameMode = mode;
+    }
+
+    /**
+     * play book moves without searching while the position is in the book
+     */
+    public void setOpeningBook(OpeningBook book) {
+        openingBook = book;
+    }
+
+    @Override
+    public Position selectMove(GameState game) throws Exception {
+        return selectMove(game, null, new StopToken());
     }
 
+    /**
+     * iterative deepening: search depth 1, 2, 3, ... until the time
+     * limit is reached and return the best move of the deepest
+     * completed iteration. The principal variation of every iteration
+     * is searched first in the next one.
+     */
     @Override
-    public Position selectMove(OthelloModel game) throws Exception {
+    public Position selectMove(GameState game, Duration timeLimit) throws Exception {
+        return selectMove(game, timeLimit, new StopToken());
+    }
 
-        visitedNodes = new ArrayList<int[]>();
-        games = new Stack<OthelloModel>();
-        this.game = (OthelloModel)game.clone();
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit, StopToken token) throws Exception {
+        if (timeLimit != null)
+            return iterate(game, 1, MAX_PLY, timeLimit, token);
 
-        int[] bestOption;
+        // answered while the opponent was thinking
+        Position pondered = ponderMoves.get(game.getHash());
+        if (pondered != null) {
+            Arrays.fill(heatmap, 0);
+            stats.start();
+            lastStats = stats.finish(getClass().getSimpleName());
+            return pondered;
+        }
 
-        computer = game.getCurrentPlayer();
-        opponent = game.getOpponentPlayer();
-        evaluate.setComputerAndOpponent(computer, opponent);
+        return iterate(game, MAX_DEPTH, MAX_DEPTH, null, token);
+    }
 
-        bestOption = miniMax(MAX_DEPTH, computer, Integer.MIN_VALUE, Integer.MAX_VALUE);
-        return new Position(bestOption[BEST_ROW], bestOption[BEST_COL]);
+    /**
+     * abort a running search; it returns the best move of the
+     * deepest completed iteration
+     */
+    @Override
+    public void stop() {
+        token.stop();
+    }
+
+    @Override
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * think on the opponent's time: game has the opponent to move.
+     * Searches the position after each of the opponent's moves, the
+     * reply expected by the last search first, and keeps the moves found
+     * so that selectMove answers them without searching. Then searches
+     * the expected reply deeper and deeper until stop() is called. All
+     * of it also fills the transposition table for the real search.
+     * The search listener hears nothing of it.
+     *
+     * @param token: ends pondering, see StopToken
+     */
+    public void ponder(GameState game, StopToken token) throws Exception {
+        this.token = token;
+        ponderMoves.clear();
+        if (!game.isRunning())
+            return;
+
+        GameState position = new GameState(game);
+        int[] replies = new int[Board.MAX_SQUARES];
+        int nrOfReplies = position.generateMoves(replies);
+
+        // the principal variation of the last search predicts the reply
+        int expected = (previousPvLength > 1) ? previousPv[1] : -1;
+        for (int i = 1; i < nrOfReplies; i++) {
+            if (replies[i] == expected) {
+                replies[i] = replies[0];
+                replies[0] = expected;
+            }
+        }
+
+        pondering = true;
+        try {
+            for (int i = 0; i < nrOfReplies && !token.isStopped(); i++)
+                ponderReply(position, replies[i], MAX_DEPTH, MAX_DEPTH, token);
+
+            if (nrOfReplies > 0 && !token.isStopped())
+                ponderReply(position, replies[0], MAX_DEPTH + 1, MAX_PLY, token);
+        } finally {
+            pondering = false;
+        }
+    }
+
+    /**
+     * search the position after the opponent's reply and keep the move
+     * of the deepest completed iteration
+     */
+    private void ponderReply(GameState position, int reply, int firstDepth,
+                             int lastDepth, StopToken token) throws Exception {
+        Field opponent = position.getCurrentPlayer();
+        position.makeMove(reply);
+
+        // the opponent moves again if we have to pass
+        if (position.isRunning() && position.getCurrentPlayer() != opponent) {
+            Position move = iterate(position, firstDepth, lastDepth, null, token);
+            if (completedDepth >= firstDepth)
+                ponderMoves.put(position.getHash(), move);
+        }
+
+        position.undoMove();
+    }
+
+    /**
+     * search every depth from firstDepth to lastDepth, or as far as the
+     * time limit allows when one is given, until token is stopped
+     */
+    Position iterate(GameState game, int firstDepth, int lastDepth,
+                     Duration timeLimit, StopToken token) throws Exception {
+
+        this.token = token;
+        startSearch(game);
+        Position move = searchMove(firstDepth, lastDepth, timeLimit);
+        SearchStats finished = stats.finish(getClass().getSimpleName());
+        if (!pondering)
+            lastStats = finished;
+        return move;
+    }
+
+    private Position searchMove(int firstDepth, int lastDepth, Duration timeLimit) {
+
+        timed = (timeLimit != null);
+        if (timed)
+            deadline = System.nanoTime() + timeLimit.toNanos();
+
+        // book moves and solved endgames are as good as any depth
+        completedDepth = MAX_PLY;
+        scoredDepth = 0;
+
+        if (openingBook != null && this.game.isRunning()) {
+            int square = openingBook.lookup(this.game.getBoard(), computer);
+            if (square != -1 && this.game.getBoard().isLegalMove(computer, square))
+                return toPosition(square);
+        }
+
+        int empties = this.game.getBoard().countEmpty();
+        // the solver works on the 64-bit masks of boards up to 8 by 8; it
+        // gets half of the time, the heuristic search the rest in case
+        // the solve doesn't finish
+        if (this.game.isRunning() && empties <= endgameEmpties && !this.game.getBoard().isWide()) {
+            long solveDeadline = timed ? deadline - timeLimit.toNanos() / 2 : 0;
+            int square = endgameSolver.findBestMove((NarrowBoard)this.game.getBoard(), computer,
+                    endgameMode, token, timed, solveDeadline);
+            stats.nodes += endgameSolver.getNodes();
+            stats.cutoffs += endgameSolver.getCutoffs();
+            stats.firstMoveCutoffs += endgameSolver.getFirstMoveCutoffs();
+
+            if (!endgameSolver.isAborted()) {
+                stats.depth = empties;
+                stats.solved = true;
+                if (listener != null && !pondering)
+                    listener.searchProgress(empties, toPosition(square), (int)stats.nodes);
+                return toPosition(square);
+            }
+        }
+
+        int completedMove = -1;
+        int maxDepth = Math.min(lastDepth, Math.max(firstDepth, empties));
+        completedDepth = 0;
+
+        for (int depth = firstDepth; depth <= maxDepth && !timeUp; depth++) {
+            int score = searchRoot(depth);
+
+            if (!timeUp) {
+                iterationScores[depth] = score;
+                if (scoredDepth == 0)
+                    firstScoredDepth = depth;
+                scoredDepth = depth;
+                completedMove = bestMove;
+                completedDepth = depth;
+                stats.depth = depth;
+                previousPvLength = pvLength[0];
+                System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+                if (listener != null && !pondering)
+                    listener.searchProgress(depth, toPosition(completedMove), (int)stats.nodes);
+            }
+        }
+
+        // not even one iteration finished, fall back to any legal move
+        if (completedMove == -1 && this.game.isRunning()
+                && this.game.generateMoves(moveLists[0]) > 0)
+            completedMove = (bestMove != -1) ? bestMove : moveLists[0][0];
+
+        return toPosition(completedMove);
     }
 
     @Override
     public int getNumOfPositionsVisitedLastMove() {
-        return visitedNodes.size();
+        return (int)lastStats.getNodes();
+    }
+
+    @Override
+    public SearchStats getLastSearchStats() {
+        return lastStats;
     }
 
     @Override
-    public int[][] getPreviouslyVisitedNodes() {
-        return visitedNodes.toArray(new int[visitedNodes.size()][]);
+    public int[] getSearchHeatmap() {
+        return heatmap.clone();
+    }
+
+    private void startSearch(GameState game) throws Exception {
+
+        Arrays.fill(heatmap, 0);
+        stats.start();
+
+        // the search plays and takes back moves on a single copy
+        this.game = new GameState(game);
+
+        computer = game.getCurrentPlayer();
+        opponent = game.getOpponentPlayer();
+        evaluate.setComputerAndOpponent(computer, opponent);
+
+        if (managesTable) {
+            if (evaluate != tableStrategy || computer != tableComputer) {
+                table.clear();
+                tableStrategy = evaluate;
+                tableComputer = computer;
+            }
+            table.newSearch();
+        }
+
+        // the scores of the last search guess the scores of this one
+        if (evaluate != scoreStrategy || computer != scoreComputer) {
+            scoreStrategy = evaluate;
+            scoreComputer = computer;
+            previousScoresDepth = 0;
+            aspirationDelta = 0;
+        } else {
+            previousScoresDepth = scoredDepth;
+            System.arraycopy(iterationScores, 0, previousScores, 0, previousScoresDepth + 1);
+        }
+
+        ordering.newSearch(this.game.getBoard());
+        previousPvLength = 0;
+        timeUp = false;
+        nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+    }
+
+    /**
+     * search the root with an aspiration window: a narrow window around
+     * the score of the previous iteration, or of the same depth in the
+     * previous search. Scores swing between odd and even depths, so the
+     * previous iteration of the same parity is used once there is one.
+     * A score on the lower edge (fail low) or upper edge (fail high) only
+     * bounds the real score, so that side of the window is widened and
+     * the root searched again.
+     */
+    private int searchRoot(int depth) {
+        boolean hasGuess;
+        int guess = 0;
+        if (scoredDepth > 0 && depth - 2 >= firstScoredDepth) {
+            hasGuess = true;
+            guess = iterationScores[depth - 2];
+        } else {
+            hasGuess = depth <= previousScoresDepth;
+            if (hasGuess)
+                guess = previousScores[depth];
+        }
+
+        int alpha = Integer.MIN_VALUE;
+        int beta = Integer.MAX_VALUE;
+        long delta = (long)ASPIRATION_WIDTH * aspirationDelta;
+        if (hasGuess && delta > 0) {
+            alpha = window(guess - delta);
+            beta = window(guess + delta);
+        }
+
+        while (true) {
+            bestMove = -1;
+            followPv = true;
+            int score = miniMax(depth, 0, alpha, beta);
+            if (timeUp)
+                return score;
+
+            if (score <= alpha && alpha != Integer.MIN_VALUE) {
+                delta *= ASPIRATION_GROWTH;
+                alpha = window(score - delta);
+            } else if (score >= beta && beta != Integer.MAX_VALUE) {
+                delta *= ASPIRATION_GROWTH;
+                beta = window(score + delta);
+            } else {
+                if (hasGuess) {
+                    int change = Math.max(Math.abs(score - guess), MIN_ASPIRATION_DELTA);
+                    aspirationDelta = (aspirationDelta == 0) ? change : (3 * aspirationDelta + change) / 4;
+                }
+                return score;
+            }
+
+            stats.aspirationResearches++;
+        }
+    }
+
+    /**
+     * a window bound, open on that side once it leaves the int range
+     */
+    private static int window(long bound) {
+        return (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bound));
+    }
+
+    private Position toPosition(int square) {
+        if (square == -1)
+            return new Position(-1, -1);
+
+        Board board = this.game.getBoard();
+        return new Position(board.getX(square), board.getY(square));
+    }
+
+    private boolean isTimeUp() {
+        if (--nodesUntilTimeCheck <= 0) {
+            nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+            if (token.isStopped() || (timed && System.nanoTime() - deadline > 0))
+                timeUp = true;
+        }
+        return timeUp;
     }
 
     /** MiniMax (recursive) at level of depth for maximizing or minimizing player
-     with alpha-beta cut-off. Return int[3] of {score, row, col}  */
-    private int[] miniMax(int depth, Field player, int alpha, int beta) throws Exception {
+     with alpha-beta cut-off. Returns the score, the best move is recorded at ply 0 */
+    private int miniMax(int depth, int ply, int alpha, int beta) {
+
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        pvLength[ply] = ply;
 
-        List<Position> nextMoves = game.getPossibleMoves(player);
-        Position bestPosition = new Position(-1, -1);
+        // transposition table: cut-off below the root, best move for ordering
+        long key = game.getHash();
+        long entry = table.probe(key);
+        int tableMove = -1;
+        stats.tableProbes++;
+        if (entry != TranspositionTable.NO_ENTRY) {
+            stats.tableHits++;
+            tableMove = TranspositionTable.getMove(entry);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int tableScore = TranspositionTable.getScore(entry);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT)
+                    return tableScore;
+                else if (bound == TranspositionTable.LOWER_BOUND)
+                    alpha = Math.max(alpha, tableScore);
+                else
+                    beta = Math.min(beta, tableScore);
+                if (alpha >= beta)
+                    return tableScore;
+            }
+        }
+
+        int[] nextMoves = moveLists[ply];
+        int nrOfMoves = game.isRunning() ? game.generateMoves(nextMoves) : 0;
         int score;
 
-        if (!game.isRunning() || depth == 0 || nextMoves.isEmpty()) {
+        if (depth == 0 || nrOfMoves == 0) {
             // Game over or depth reached, evaluate score
-            score = evaluate.evaluateBoard(game.getBoard().getBoard());
-            return new int[] {score, bestPosition.x, bestPosition.y};
-        } else {
+            stats.evaluations++;
+            return evaluate.evaluateBoard(game.getBoard());
+        }
+
+        // search the previous principal variation first, otherwise
+        // the best move of an earlier visit, then killers and history
+        Field player = game.getCurrentPlayer();
+        int hashMove = (followPv && ply < previousPvLength) ? previousPv[ply] : tableMove;
+        ordering.sort(nextMoves, nrOfMoves, ply, player, hashMove);
+
+        boolean maximizing = player == computer;
+        int bestSquare = -1;
+
+        for (int i = 0; i < nrOfMoves; i++) {
+            int square = nextMoves[i];
+
+            // only the first move of a node can continue the old PV
+            if (i > 0)
+                followPv = false;
+
+            heatmap[square]++;
+            stats.nodes++;
+
+            // Try this move for the current player and take it back afterwards
+            game.makeMove(square);
+            score = miniMax(depth - 1, ply + 1, alpha, beta);
+            game.undoMove();
+
+            if (isTimeUp())
+                return 0;
 
-            for (Position position : nextMoves) {
-
-                visitedNodes.add(new int[] {position.x, position.y});
-
-                // Try this move for the current "player"
-                // push game to the stack and clone it
-                games.push(game);
-                game = (OthelloModel)game.clone();
-                game.move(position);
-
-                if (player == computer) {  // mySeed (computer) is maximizing player
-                    score = miniMax(depth - 1, opponent, alpha, beta)[0];
-                    if (score > alpha) {
-                        alpha = score;
-                        bestPosition = position;
-                    }
-                } else {  // oppSeed is minimizing player
-                    score = miniMax(depth - 1, computer, alpha, beta)[0];
-                    if (score < beta) {
-                        beta = score;
-                        bestPosition = position;
-                    }
+            boolean improved = false;
+            if (maximizing) {  // mySeed (computer) is maximizing player
+                if (score > alpha) {
+                    alpha = score;
+                    improved = true;
                 }
-                // undo move
-                // go to previous clone
-                if (!games.isEmpty())
-                    game = games.pop();
+            } else {  // oppSeed is minimizing player
+                if (score < beta) {
+                    beta = score;
+                    improved = true;
+                }
+            }
+
+            if (improved) {
+                bestSquare = square;
+                if (ply == 0)
+                    bestMove = square;
+
+                pvTable[ply][ply] = square;
+                System.arraycopy(pvTable[ply + 1], ply + 1, pvTable[ply], ply + 1,
+                        pvLength[ply + 1] - ply - 1);
+                pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+            }
 
-                // cut-off
-                if (alpha >= beta) break;
+            // cut-off
+            if (alpha >= beta) {
+                stats.cutoffs++;
+                if (i == 0)
+                    stats.firstMoveCutoffs++;
+                ordering.addCutoff(square, ply, player, depth);
+                break;
             }
-            return new int[] {(player == computer) ? alpha : beta, bestPosition.x, bestPosition.y};
         }
+
+        score = maximizing ? alpha : beta;
+
+        int bound;
+        if (score <= alphaOrig)
+            bound = TranspositionTable.UPPER_BOUND;
+        else if (score >= betaOrig)
+            bound = TranspositionTable.LOWER_BOUND;
+        else
+            bound = TranspositionTable.EXACT;
+        table.store(key, depth, bound, score, bestSquare != -1 ? bestSquare : tableMove);
+
+        return score;
     }
 }
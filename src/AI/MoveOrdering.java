@@ -0,0 +1,164 @@
+package AI;
+
+import othello.Board;
+import othello.Field;
+import othello.SquareWeights;
+
+/**
+ * MoveOrdering: sorts the moves of a node before they are searched
+ *
+ * Moves are tried in this order:
+ *   1. the hash move (transposition table or principal variation)
+ *   2. the two killer moves of the ply, moves that caused a cut-off
+ *      in a sibling node
+ *   3. all other moves by their history score, which grows every time
+ *      a move causes a cut-off, and then by a static square priority
+ *      (corners first, X-squares last), taken from the 8 by 8 table
+ *      by distance to the sides and holes on other boards
+ *
+ * Keeps one score buffer per ply, so sorting doesn't allocate.
+ */
+public class MoveOrdering {
+
+    private static final int[][] squarePriority =
+            new int[][] {{15,  1, 12,  9,  9, 12,  1, 15},
+                         { 1,  0,  4,  5,  5,  4,  0,  1},
+                         {12,  4, 11,  8,  8, 11,  4, 12},
+                         { 9,  5,  8,  6,  6,  8,  5,  9},
+                         { 9,  5,  8,  6,  6,  8,  5,  9},
+                         {12,  4, 11,  8,  8, 11,  4, 12},
+                         { 1,  0,  4,  5,  5,  4,  0,  1},
+                         {15,  1, 12,  9,  9, 12,  1, 15}};
+
+
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int KILLER_SCORE = Integer.MAX_VALUE - 2;
+
+    // history scores are multiplied with this before the static priority is added
+    private static final int HISTORY_SCALE = 16;
+    private static final int MAX_HISTORY = Integer.MAX_VALUE / (4 * HISTORY_SCALE);
+
+    private int[][] killers;
+    private int[][] history;
+    private int[][] scoreLists;
+
+    // static priority by square for the board of the last search
+    private int[] staticOrder;
+    private int orderWidth;
+    private int orderHeight;
+    private boolean orderWide;
+    private long orderLayout;
+
+    /**
+     * @param maxPly: deepest ply that will be sorted
+     */
+    public MoveOrdering(int maxPly) {
+        killers = new int[maxPly + 1][2];
+        history = new int[2][Board.MAX_SQUARES];
+        scoreLists = new int[maxPly + 1][Board.MAX_SQUARES];
+        staticOrder = new int[Board.MAX_SQUARES];
+        clearKillers();
+    }
+
+    /**
+     * forget the killers and age the history scores; called before
+     * every search since old cut-offs are less likely to repeat
+     */
+    public void newSearch(Board board) {
+        if (board.width != orderWidth || board.height != orderHeight || board.isWide() != orderWide
+                || board.getLayoutKey() != orderLayout)
+            setStaticOrder(board);
+
+        clearKillers();
+        for (int[] colour : history)
+            for (int square = 0; square < colour.length; square++)
+                colour[square] >>= 1;
+    }
+
+    private void setStaticOrder(Board board) {
+        orderWidth = board.width;
+        orderHeight = board.height;
+        orderWide = board.isWide();
+        orderLayout = board.getLayoutKey();
+
+        for (int x = 0; x < board.width; x++) {
+            for (int y = 0; y < board.height; y++) {
+                int foldX = Math.min(SquareWeights.wallDistance(board, x, y, 1, 0),
+                                     SquareWeights.wallDistance(board, x, y, -1, 0));
+                int foldY = Math.min(SquareWeights.wallDistance(board, x, y, 0, 1),
+                                     SquareWeights.wallDistance(board, x, y, 0, -1));
+                staticOrder[board.square(x, y)] = squarePriority[clamp(foldX)][clamp(foldY)];
+            }
+        }
+    }
+
+    /**
+     * distances deeper than the centre of the table count like the centre
+     */
+    private static int clamp(int distance) {
+        return Math.min(distance, squarePriority.length / 2 - 1);
+    }
+
+    private void clearKillers() {
+        for (int[] ply : killers) {
+            ply[0] = -1;
+            ply[1] = -1;
+        }
+    }
+
+    /**
+     * sort the moves of a node, best first
+     *
+     * @param hashMove: square to search first, -1 if there is none
+     */
+    public void sort(int[] moves, int nrOfMoves, int ply, Field player, int hashMove) {
+        int[] scores = scoreLists[ply];
+        int[] playerHistory = history[player.ordinal()];
+        int[] plyKillers = killers[ply];
+
+        for (int i = 0; i < nrOfMoves; i++) {
+            int square = moves[i];
+            if (square == hashMove)
+                scores[i] = HASH_MOVE_SCORE;
+            else if (square == plyKillers[0])
+                scores[i] = KILLER_SCORE;
+            else if (square == plyKillers[1])
+                scores[i] = KILLER_SCORE - 1;
+            else
+                scores[i] = playerHistory[square] * HISTORY_SCALE + staticOrder[square];
+        }
+
+        // insertion sort, nodes rarely have more than 15 moves
+        for (int i = 1; i < nrOfMoves; i++) {
+            int move = moves[i];
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * remember a move that caused a cut-off
+     *
+     * @param depth: remaining depth of the node, deeper cut-offs count more
+     */
+    public void addCutoff(int square, int ply, Field player, int depth) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != square) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = square;
+        }
+
+        int[] playerHistory = history[player.ordinal()];
+        playerHistory[square] += depth * depth;
+        if (playerHistory[square] > MAX_HISTORY)
+            for (int i = 0; i < playerHistory.length; i++)
+                playerHistory[i] >>= 1;
+    }
+}
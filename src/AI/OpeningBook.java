@@ -0,0 +1,195 @@
+package AI;
+
+import othello.BitBoard;
+import othello.Board;
+import othello.Field;
+import othello.NarrowBoard;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * OpeningBook: known best moves for early positions
+ *
+ * The book is a binary file that is memory-mapped on the first lookup:
+ *
+ *   int    magic ("OBK1")
+ *   int    number of entries
+ *   entry  (long key, byte move) * number of entries, sorted by key
+ *
+ * A position and the same position rotated or mirrored share one entry:
+ * the key is computed for all 8 symmetries of the board and the smallest
+ * one is used, the move is stored in that canonical orientation and
+ * turned back on lookup. Books are shared by every engine in the JVM
+ * that opens the same file.
+ */
+public class OpeningBook {
+
+    private static final int MAGIC = 0x4F424B31; // "OBK1"
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 9;
+    private static final int SYMMETRIES = 8;
+
+    private static final Map<Path, OpeningBook> books = new ConcurrentHashMap<Path, OpeningBook>();
+
+    private final Path path;
+
+    // mapped lazily, null if the file is missing or broken
+    private volatile MappedByteBuffer entries;
+    private volatile boolean loaded;
+    private int size;
+
+    private OpeningBook(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * the book of the given file; nothing is read before the first lookup
+     */
+    public static OpeningBook open(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        OpeningBook book = books.get(key);
+        if (book == null) {
+            books.putIfAbsent(key, new OpeningBook(key));
+            book = books.get(key);
+        }
+        return book;
+    }
+
+    /**
+     * @return the book move for the player to move as square index,
+     *         -1 if the position is not in the book
+     */
+    public int lookup(Board board, Field player) {
+        MappedByteBuffer buffer = load();
+        if (buffer == null || board.isWide())
+            return -1;
+
+        NarrowBoard narrow = (NarrowBoard)board;
+        long black = narrow.getPieces(Field.BLACK);
+        long white = narrow.getPieces(Field.WHITE);
+        long holes = narrow.getHoles();
+
+        int symmetry = canonicalSymmetry(black, white, holes, player);
+        long key = key(black, white, holes, player, symmetry);
+
+        // binary search on the sorted entries
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = buffer.getLong(HEADER_SIZE + middle * ENTRY_SIZE);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                int move = buffer.get(HEADER_SIZE + middle * ENTRY_SIZE + 8);
+                return Long.numberOfTrailingZeros(
+                        BitBoard.inverseTransform(1L << move, symmetry));
+            }
+        }
+
+        return -1;
+    }
+
+    public int size() {
+        return (load() == null) ? 0 : size;
+    }
+
+    private MappedByteBuffer load() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    entries = map();
+                    loaded = true;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private MappedByteBuffer map() {
+        if (!Files.isReadable(path))
+            return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+                return null;
+
+            int count = buffer.getInt(4);
+            if (buffer.capacity() < HEADER_SIZE + (long)count * ENTRY_SIZE)
+                return null;
+
+            size = count;
+            return buffer;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * the symmetry under which the position has the smallest key
+     */
+    public static int canonicalSymmetry(long black, long white, long holes, Field player) {
+        int best = 0;
+        long bestKey = key(black, white, holes, player, 0);
+        for (int symmetry = 1; symmetry < SYMMETRIES; symmetry++) {
+            long key = key(black, white, holes, player, symmetry);
+            if (key < bestKey) {
+                bestKey = key;
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * hash of the position after applying the given symmetry
+     */
+    public static long key(long black, long white, long holes, Field player, int symmetry) {
+        long hash = mix(BitBoard.transform(black, symmetry));
+        hash = mix(hash ^ BitBoard.transform(white, symmetry));
+        hash = mix(hash ^ BitBoard.transform(holes, symmetry));
+        return (player == Field.WHITE) ? ~hash : hash;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * write a book file
+     *
+     * @param moves: canonical key to canonical move, see canonicalSymmetry
+     */
+    public static void write(Path path, Map<Long, Integer> moves) throws IOException {
+        Map<Long, Integer> sorted = new TreeMap<Long, Integer>(moves);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(path.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.size());
+            for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeByte(entry.getValue());
+            }
+        }
+
+        // a cached book of this file has to be mapped again
+        books.remove(path.toAbsolutePath().normalize());
+    }
+}
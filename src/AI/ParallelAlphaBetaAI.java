@@ -0,0 +1,295 @@
+package AI;
+
+import othello.Board;
+import othello.Field;
+import othello.GameState;
+import othello.Position;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ParallelAlphaBetaAI: Lazy SMP on top of MiniMaxAlphaBetaAI
+ *
+ * Every thread runs its own iterative deepening alpha-beta search on its
+ * own copy of the game. The threads only communicate through a shared
+ * transposition table, so results found by one thread cut off and order
+ * the search of the others. Helper threads start one ply deeper every
+ * other thread to spread them over the tree. The move of the main thread
+ * (which runs on the caller's thread) is played.
+ */
+public class ParallelAlphaBetaAI implements AI {
+
+    private static final int MAX_DEPTH = 3;
+
+    // a game never lasts longer than there are squares
+    private static final int MAX_PLY = Board.MAX_SQUARES;
+
+    // 2^20 entries, 16 MB shared by all threads
+    private static final int DEFAULT_TABLE_SIZE = 1 << 20;
+
+    private TranspositionTable table;
+    private HeuristicStrategy tableStrategy;
+    private Field tableComputer;
+
+    private HeuristicStrategy evaluate;
+    private OpeningBook openingBook;
+
+    // workers[0] is the main search, the others are helpers
+    private MiniMaxAlphaBetaAI[] workers;
+    private ExecutorService helperThreads;
+
+    // counters of all threads together
+    private SearchStats stats;
+    // copy made when the last search finished, see getLastSearchStats
+    private volatile SearchStats lastStats;
+
+    // threads that took part in the last search
+    private int searchThreads;
+
+    // of the running or last search
+    private volatile StopToken token = new StopToken();
+
+    // of a search without time limit
+    private int maxDepth = MAX_DEPTH;
+
+    public ParallelAlphaBetaAI() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelAlphaBetaAI(int threads) {
+        this(threads, new TranspositionTable(DEFAULT_TABLE_SIZE,
+                TranspositionTable.Replacement.DEPTH_PREFERRED));
+    }
+
+    /**
+     * @param threads: number of search threads, including the caller's
+     * @param table: transposition table shared by all threads
+     */
+    public ParallelAlphaBetaAI(int threads, TranspositionTable table) {
+        this.table = table;
+        evaluate = new HeuristicPieceCounter(); // default strategy
+        stats = new SearchStats();
+        lastStats = new SearchStats();
+
+        workers = new MiniMaxAlphaBetaAI[Math.max(threads, 1)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new MiniMaxAlphaBetaAI(table, false);
+            workers[i].setStrategy(i == 0 ? evaluate : evaluate.copy());
+
+            // the main thread solves the endgame alone
+            if (i > 0)
+                workers[i].setEndgameEmpties(0);
+        }
+
+        if (workers.length > 1)
+            helperThreads = Executors.newFixedThreadPool(workers.length - 1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "alpha-beta-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * the main search uses the strategy, every helper a copy of its own
+     */
+    @Override
+    public void setStrategy(HeuristicStrategy strategy) {
+        evaluate = strategy;
+        for (int i = 0; i < workers.length; i++)
+            workers[i].setStrategy(i == 0 ? strategy : strategy.copy());
+    }
+
+    @Override
+    public Position selectMove(GameState game) throws Exception {
+        return selectMove(game, null, new StopToken());
+    }
+
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit) throws Exception {
+        return selectMove(game, timeLimit, new StopToken());
+    }
+
+    /**
+     * token stops the main search, which then stops the helpers
+     */
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit, StopToken token) throws Exception {
+        this.token = token;
+        if (timeLimit == null)
+            return search(game, 1, maxDepth, null, token);
+        return search(game, 1, MAX_PLY, timeLimit, token);
+    }
+
+    /**
+     * depth searched when there is no time limit, MAX_DEPTH by default
+     */
+    public void setMaxDepth(int depth) {
+        maxDepth = depth;
+    }
+
+    /**
+     * play book moves without searching while the position is in the book
+     */
+    public void setOpeningBook(OpeningBook book) {
+        openingBook = book;
+        workers[0].setOpeningBook(book);
+    }
+
+    /**
+     * stop the main search, which then stops every helper
+     */
+    @Override
+    public void stop() {
+        token.stop();
+    }
+
+    /**
+     * progress of the main search, which decides the move
+     */
+    @Override
+    public void setSearchListener(SearchListener listener) {
+        workers[0].setSearchListener(listener);
+    }
+
+    public int getNumberOfThreads() {
+        return workers.length;
+    }
+
+    /**
+     * nodes searched by each thread during the last move, the main
+     * thread first; 0 for helpers that didn't take part, like on a
+     * book move
+     */
+    public int[] getNodesPerThread() {
+        int[] nodes = new int[workers.length];
+        for (int i = 0; i < searchThreads; i++)
+            nodes[i] = workers[i].getNumOfPositionsVisitedLastMove();
+
+        return nodes;
+    }
+
+    /**
+     * counters of all threads added up, depth and time of the main search
+     */
+    @Override
+    public SearchStats getLastSearchStats() {
+        return lastStats;
+    }
+
+    @Override
+    public int getNumOfPositionsVisitedLastMove() {
+        int nodes = 0;
+        for (int threadNodes : getNodesPerThread())
+            nodes += threadNodes;
+
+        return nodes;
+    }
+
+    @Override
+    public int[] getSearchHeatmap() {
+        int[] heatmap = new int[Board.MAX_SQUARES];
+        for (int i = 0; i < searchThreads; i++) {
+            int[] workerHeatmap = workers[i].getSearchHeatmap();
+            for (int square = 0; square < heatmap.length; square++)
+                heatmap[square] += workerHeatmap[square];
+        }
+
+        return heatmap;
+    }
+
+    public void shutdown() {
+        if (helperThreads != null)
+            helperThreads.shutdownNow();
+    }
+
+    private Position search(final GameState game, int firstDepth, int lastDepth,
+                            final Duration timeLimit, StopToken token) throws Exception {
+
+        stats.start();
+        searchThreads = workers.length;
+        try {
+            // book moves need no helpers, the main search plays them right away
+            if (openingBook != null && game.isRunning()
+                    && openingBook.lookup(game.getBoard(), game.getCurrentPlayer()) != -1) {
+                searchThreads = 1;
+                return workers[0].iterate(game, firstDepth, lastDepth, timeLimit, token);
+            }
+
+            return searchThreads(game, firstDepth, lastDepth, timeLimit, token);
+        } finally {
+            stats.depth = workers[0].getLastSearchStats().getDepth();
+            stats.solved = workers[0].getLastSearchStats().isSolved();
+            for (int i = 0; i < searchThreads; i++)
+                stats.add(workers[i].getLastSearchStats());
+            lastStats = stats.finish(getClass().getSimpleName());
+        }
+    }
+
+    private Position searchThreads(final GameState game, int firstDepth, int lastDepth,
+                                   final Duration timeLimit, StopToken token) throws Exception {
+
+        Field computer = game.getCurrentPlayer();
+
+        if (evaluate != tableStrategy || computer != tableComputer) {
+            table.clear();
+            tableStrategy = evaluate;
+            tableComputer = computer;
+        }
+        table.newSearch();
+
+        // the helpers stop together once the main search is done
+        final StopToken helperToken = new StopToken();
+
+        // every helper works on its own copy, started before the main search
+        List<Future<?>> helpers = new ArrayList<Future<?>>();
+        for (int i = 1; i < workers.length; i++) {
+            final MiniMaxAlphaBetaAI helper = workers[i];
+            final GameState copy = new GameState(game);
+            final int helperDepth = firstDepth + (i % 2);
+
+            helpers.add(helperThreads.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    helper.iterate(copy, helperDepth, MAX_PLY, timeLimit, helperToken);
+                    return null;
+                }
+            }));
+        }
+
+        MiniMaxAlphaBetaAI main = workers[0];
+        Position best;
+
+        // the first helper that failed, reported once the main search is done
+        ExecutionException helperFailure = null;
+        try {
+            best = main.iterate(game, firstDepth, lastDepth, timeLimit, token);
+        } finally {
+            helperToken.stop();
+            for (Future<?> helper : helpers) {
+                try {
+                    helper.get();
+                } catch (ExecutionException e) {
+                    if (helperFailure == null)
+                        helperFailure = e;
+                }
+            }
+        }
+
+        // a failed helper is an error of the search, not only of its thread
+        if (helperFailure != null)
+            throw helperFailure;
+
+        return best;
+    }
+}
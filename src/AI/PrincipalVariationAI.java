@@ -0,0 +1,377 @@
+package AI;
+
+import othello.Board;
+import othello.Field;
+import othello.GameState;
+import othello.Position;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * PrincipalVariationAI: null window searches on top of alpha-beta
+ *
+ * PVS (NegaScout) searches the first move of a node with the full
+ * window and every other move with a null window that only proves it
+ * is not better; a move is searched again with the full window when
+ * that proof fails. MTD(f) only ever uses null windows and converges on
+ * the score through a series of them, starting from the score of the
+ * previous iteration. It relies on the transposition table to avoid
+ * searching the same nodes again in every pass.
+ *
+ * Both modes use the move generator of GameState, the same heuristics,
+ * transposition table and move ordering as MiniMaxAlphaBetaAI. Scores are
+ * negamax scores, always seen from the player to move.
+ */
+public class PrincipalVariationAI implements AI {
+
+    public enum Mode {
+        PVS, MTDF
+    }
+
+    private static final int MAX_DEPTH = 3;
+
+    // a game never lasts longer than there are squares
+    private static final int MAX_PLY = Board.MAX_SQUARES;
+
+    // nodes searched between two looks at the clock
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    // 2^18 entries, 4 MB
+    private static final int DEFAULT_TABLE_SIZE = 1 << 18;
+
+    // larger than any evaluation, small enough to negate
+    private static final int INFINITY = 1 << 30;
+
+    private final Mode mode;
+
+    private GameState game;
+
+    private HeuristicStrategy evaluate;
+    // moves searched per square, see getSearchHeatmap
+    private int[] heatmap;
+    private SearchStats stats;
+    // copy made when the last search finished, see getLastSearchStats
+    private volatile SearchStats lastStats;
+
+    // scores depend on the strategy and the computer's colour,
+    // the table is cleared whenever one of them changes
+    private TranspositionTable table;
+    private HeuristicStrategy tableStrategy;
+    private Field tableComputer;
+
+    // one move buffer per ply so that the search doesn't allocate
+    private int[][] moveLists;
+    private MoveOrdering ordering;
+    private int bestMove;
+
+    // time control for iterative deepening
+    private boolean timed;
+    private long deadline;
+    private boolean timeUp;
+    private int nodesUntilTimeCheck;
+    // of the running or last search
+    private volatile StopToken token = new StopToken();
+
+    private SearchListener listener;
+
+    private Field computer;
+    private Field opponent;
+
+    public PrincipalVariationAI() {
+        this(Mode.PVS);
+    }
+
+    public PrincipalVariationAI(Mode mode) {
+        this(mode, new TranspositionTable(DEFAULT_TABLE_SIZE,
+                TranspositionTable.Replacement.DEPTH_PREFERRED));
+    }
+
+    /**
+     * @param mode: PVS or MTD(f)
+     * @param table: transposition table, sized to the memory budget
+     */
+    public PrincipalVariationAI(Mode mode, TranspositionTable table) {
+        this.mode = mode;
+        this.table = table;
+        evaluate = new HeuristicPieceCounter(); // default strategy
+        moveLists = new int[MAX_PLY + 1][Board.MAX_SQUARES];
+        ordering = new MoveOrdering(MAX_PLY);
+        stats = new SearchStats();
+        lastStats = new SearchStats();
+        heatmap = new int[Board.MAX_SQUARES];
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void setStrategy(HeuristicStrategy strategy) {
+        evaluate = strategy;
+    }
+
+    @Override
+    public Position selectMove(GameState game) throws Exception {
+        return selectMove(game, null, new StopToken());
+    }
+
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit) throws Exception {
+        return selectMove(game, timeLimit, new StopToken());
+    }
+
+    @Override
+    public Position selectMove(GameState game, Duration timeLimit, StopToken token) throws Exception {
+        this.token = token;
+        if (timeLimit == null)
+            return iterate(game, MAX_DEPTH, MAX_DEPTH, null);
+        return iterate(game, 1, MAX_PLY, timeLimit);
+    }
+
+    @Override
+    public void stop() {
+        token.stop();
+    }
+
+    @Override
+    public void setSearchListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public int getNumOfPositionsVisitedLastMove() {
+        return (int)lastStats.getNodes();
+    }
+
+    @Override
+    public SearchStats getLastSearchStats() {
+        return lastStats;
+    }
+
+    @Override
+    public int[] getSearchHeatmap() {
+        return heatmap.clone();
+    }
+
+    private Position iterate(GameState game, int firstDepth, int lastDepth,
+                             Duration timeLimit) throws Exception {
+
+        startSearch(game);
+        timed = (timeLimit != null);
+        if (timed)
+            deadline = System.nanoTime() + timeLimit.toNanos();
+
+        int completedMove = -1;
+        int score = 0;
+        int maxDepth = Math.min(lastDepth, Math.max(firstDepth,
+                this.game.getBoard().countEmpty()));
+
+        for (int depth = firstDepth; depth <= maxDepth && !timeUp; depth++) {
+            bestMove = -1;
+
+            if (mode == Mode.MTDF)
+                score = mtdf(score, depth);
+            else
+                score = pvs(depth, 0, -INFINITY, INFINITY);
+
+            if (!timeUp) {
+                completedMove = bestMove;
+                stats.depth = depth;
+                if (listener != null)
+                    listener.searchProgress(depth, toPosition(completedMove), (int)stats.nodes);
+            }
+        }
+
+        // not even one iteration finished, fall back to any legal move
+        if (completedMove == -1 && this.game.isRunning()
+                && this.game.generateMoves(moveLists[0]) > 0)
+            completedMove = (bestMove != -1) ? bestMove : moveLists[0][0];
+
+        lastStats = stats.finish(getClass().getSimpleName() + " " + mode);
+        return toPosition(completedMove);
+    }
+
+    private Position toPosition(int square) {
+        if (square == -1)
+            return new Position(-1, -1);
+
+        Board board = this.game.getBoard();
+        return new Position(board.getX(square), board.getY(square));
+    }
+
+    private void startSearch(GameState game) throws Exception {
+
+        Arrays.fill(heatmap, 0);
+        stats.start();
+
+        // the search plays and takes back moves on a single copy
+        this.game = new GameState(game);
+
+        computer = game.getCurrentPlayer();
+        opponent = game.getOpponentPlayer();
+        evaluate.setComputerAndOpponent(computer, opponent);
+
+        if (evaluate != tableStrategy || computer != tableComputer) {
+            table.clear();
+            tableStrategy = evaluate;
+            tableComputer = computer;
+        }
+        table.newSearch();
+
+        ordering.newSearch(this.game.getBoard());
+        timeUp = false;
+        nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+    }
+
+    private boolean isTimeUp() {
+        if (--nodesUntilTimeCheck <= 0) {
+            nodesUntilTimeCheck = TIME_CHECK_INTERVAL;
+            if (token.isStopped() || (timed && System.nanoTime() - deadline > 0))
+                timeUp = true;
+        }
+        return timeUp;
+    }
+
+    /**
+     * MTD(f): narrow the bounds on the score with null window searches
+     * until they meet
+     *
+     * @param guess: first guess, usually the score of the last iteration
+     */
+    private int mtdf(int guess, int depth) {
+        int score = guess;
+        int lower = -INFINITY;
+        int upper = INFINITY;
+        int provenMove = -1;
+
+        while (lower < upper) {
+            int beta = (score == lower) ? score + 1 : score;
+
+            bestMove = -1;
+            score = pvs(depth, 0, beta - 1, beta);
+            if (timeUp)
+                return score;
+
+            if (score < beta) {
+                upper = score;
+            } else {
+                // a fail high proves the move is at least as good as beta
+                lower = score;
+                provenMove = bestMove;
+            }
+        }
+
+        if (provenMove != -1)
+            bestMove = provenMove;
+
+        return score;
+    }
+
+    /**
+     * score of the position after a move, seen from the player who made
+     * it. The opponent may have to pass, then the player moves again.
+     */
+    private int searchChild(Field player, int depth, int ply, int alpha, int beta) {
+        if (game.getCurrentPlayer() == player)
+            return pvs(depth, ply, alpha, beta);
+
+        return -pvs(depth, ply, -beta, -alpha);
+    }
+
+    /**
+     * Principal Variation Search (fail-soft negamax). With a null window
+     * (beta == alpha + 1) it is a plain alpha-beta search, which is what
+     * MTD(f) uses. Returns the score, the best move is recorded at ply 0
+     */
+    private int pvs(int depth, int ply, int alpha, int beta) {
+
+        int alphaOrig = alpha;
+
+        // transposition table: cut-off below the root, best move for ordering
+        long key = game.getHash();
+        long entry = table.probe(key);
+        int tableMove = -1;
+        stats.tableProbes++;
+        if (entry != TranspositionTable.NO_ENTRY) {
+            stats.tableHits++;
+            tableMove = TranspositionTable.getMove(entry);
+            if (ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int tableScore = TranspositionTable.getScore(entry);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && tableScore >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && tableScore <= alpha))
+                    return tableScore;
+            }
+        }
+
+        Field player = game.getCurrentPlayer();
+        int[] nextMoves = moveLists[ply];
+        int nrOfMoves = game.isRunning() ? game.generateMoves(nextMoves) : 0;
+
+        if (depth == 0 || nrOfMoves == 0) {
+            // Game over or depth reached, evaluate score for the player to move
+            stats.evaluations++;
+            int score = evaluate.evaluateBoard(game.getBoard());
+            return (player == computer) ? score : -score;
+        }
+
+        ordering.sort(nextMoves, nrOfMoves, ply, player, tableMove);
+
+        int bestScore = -INFINITY;
+        int bestSquare = -1;
+
+        for (int i = 0; i < nrOfMoves; i++) {
+            int square = nextMoves[i];
+            int score;
+
+            heatmap[square]++;
+            stats.nodes++;
+
+            game.makeMove(square);
+            if (i == 0) {
+                score = searchChild(player, depth - 1, ply + 1, alpha, beta);
+            } else {
+                // prove that the move is no better than the best so far
+                score = searchChild(player, depth - 1, ply + 1, alpha, alpha + 1);
+                if (score > alpha && score < beta)
+                    score = searchChild(player, depth - 1, ply + 1, alpha, beta);
+            }
+            game.undoMove();
+
+            if (isTimeUp())
+                return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestSquare = square;
+                if (ply == 0)
+                    bestMove = square;
+            }
+
+            if (score > alpha)
+                alpha = score;
+
+            // cut-off
+            if (alpha >= beta) {
+                stats.cutoffs++;
+                if (i == 0)
+                    stats.firstMoveCutoffs++;
+                ordering.addCutoff(square, ply, player, depth);
+                break;
+            }
+        }
+
+        int bound;
+        if (bestScore <= alphaOrig)
+            bound = TranspositionTable.UPPER_BOUND;
+        else if (bestScore >= beta)
+            bound = TranspositionTable.LOWER_BOUND;
+        else
+            bound = TranspositionTable.EXACT;
+        table.store(key, depth, bound, bestScore, bestSquare);
+
+        return bestScore;
+    }
+}
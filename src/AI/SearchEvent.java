@@ -0,0 +1,48 @@
+package AI;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SearchEvent: Flight Recorder event for one move search,
+ * the event's duration is the search time
+ */
+@Name("othello.Search")
+@Label("AI Search")
+@Category("Othello")
+@Description("Statistics of one move search")
+class SearchEvent extends Event {
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Leaf Evaluations")
+    long evaluations;
+
+    @Label("Beta Cut-offs")
+    long cutoffs;
+
+    @Label("First Move Cut-off Rate")
+    double firstMoveCutoffRate;
+
+    @Label("Effective Branching Factor")
+    double effectiveBranchingFactor;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Table Hit Rate")
+    double tableHitRate;
+
+    @Label("Nodes per Second")
+    long nodesPerSecond;
+
+    @Label("Aspiration Re-searches")
+    int aspirationResearches;
+}
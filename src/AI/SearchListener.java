@@ -0,0 +1,21 @@
+package AI;
+
+import othello.Position;
+
+/**
+ * SearchListener: progress of a running search
+ *
+ * Called on the searching thread, implementations that touch the GUI
+ * have to hand the values over to the event thread.
+ */
+public interface SearchListener {
+
+    /**
+     * an iteration of the search finished
+     *
+     * @param depth: depth of the finished iteration
+     * @param bestMove: best move found so far
+     * @param nodes: positions visited so far during this move
+     */
+    public void searchProgress(int depth, Position bestMove, int nodes);
+}
@@ -0,0 +1,194 @@
+package AI;
+
+import java.time.Duration;
+
+/**
+ * SearchStats: counters of the last search of an AI
+ *
+ * The engines count straight into the package-private fields, plain
+ * increments that are cheap enough to leave on. When the search is over
+ * finish hands out a copy that no later search changes, and the totals
+ * are also published as a SearchEvent for Flight Recorder.
+ */
+public class SearchStats {
+
+    // positions entered by playing a move
+    long nodes;
+
+    // calls to the heuristic
+    long evaluations;
+
+    // nodes left early because a move was good enough
+    long cutoffs;
+
+    // cut-offs caused by the first move searched, a measure of ordering
+    long firstMoveCutoffs;
+
+    long tableProbes;
+    long tableHits;
+
+    // root searches repeated because the score fell outside of the
+    // aspiration window
+    int aspirationResearches;
+
+    // deepest completed iteration
+    int depth;
+
+    // the endgame solver found the move; depth is then the number of
+    // empty squares and there are no evaluations
+    boolean solved;
+
+    private long startTime;
+    private long elapsed;
+    private SearchEvent event;
+
+    SearchStats() {
+    }
+
+    /**
+     * copy of the counters, without the running event
+     */
+    private SearchStats(SearchStats other) {
+        nodes = other.nodes;
+        evaluations = other.evaluations;
+        cutoffs = other.cutoffs;
+        firstMoveCutoffs = other.firstMoveCutoffs;
+        tableProbes = other.tableProbes;
+        tableHits = other.tableHits;
+        aspirationResearches = other.aspirationResearches;
+        depth = other.depth;
+        solved = other.solved;
+        startTime = other.startTime;
+        elapsed = other.elapsed;
+    }
+
+    /**
+     * clear the counters and start the clock
+     */
+    void start() {
+        nodes = 0;
+        evaluations = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        aspirationResearches = 0;
+        depth = 0;
+        solved = false;
+        elapsed = 0;
+
+        event = new SearchEvent();
+        event.begin();
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * stop the clock and publish the event
+     *
+     * @param engine: name reported in the event
+     * @return the counters of the finished search, for getLastSearchStats
+     */
+    SearchStats finish(String engine) {
+        elapsed = System.nanoTime() - startTime;
+
+        if (event != null && event.shouldCommit()) {
+            event.engine = engine;
+            event.nodes = nodes;
+            event.evaluations = evaluations;
+            event.cutoffs = cutoffs;
+            event.firstMoveCutoffRate = getFirstMoveCutoffRate();
+            event.effectiveBranchingFactor = getEffectiveBranchingFactor();
+            event.depth = depth;
+            event.tableHitRate = getTableHitRate();
+            event.aspirationResearches = aspirationResearches;
+            event.nodesPerSecond = getNodesPerSecond();
+            event.commit();
+        }
+        event = null;
+
+        return new SearchStats(this);
+    }
+
+    /**
+     * add the counters of another search, such as one running on
+     * another thread; depth and time stay those of this search
+     */
+    void add(SearchStats other) {
+        nodes += other.nodes;
+        evaluations += other.evaluations;
+        cutoffs += other.cutoffs;
+        firstMoveCutoffs += other.firstMoveCutoffs;
+        tableProbes += other.tableProbes;
+        tableHits += other.tableHits;
+        aspirationResearches += other.aspirationResearches;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getLeafEvaluations() {
+        return evaluations;
+    }
+
+    public long getBetaCutoffs() {
+        return cutoffs;
+    }
+
+    /**
+     * share of the cut-offs that came from the first move, 0 to 1
+     */
+    public double getFirstMoveCutoffRate() {
+        return (cutoffs == 0) ? 0 : (double)firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * b such that b^depth = nodes
+     */
+    public double getEffectiveBranchingFactor() {
+        return (depth == 0 || nodes == 0) ? 0 : Math.pow(nodes, 1.0 / depth);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * whether the endgame solver played the move to the end of the game
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * share of the table probes that found an entry, 0 to 1
+     */
+    public double getTableHitRate() {
+        return (tableProbes == 0) ? 0 : (double)tableHits / tableProbes;
+    }
+
+    /**
+     * root searches that failed high or low and had to be repeated
+     * with a wider window
+     */
+    public int getAspirationResearches() {
+        return aspirationResearches;
+    }
+
+    public Duration getWallTime() {
+        return Duration.ofNanos(elapsed);
+    }
+
+    public long getNodesPerSecond() {
+        return (elapsed == 0) ? 0 : nodes * 1000000000L / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format((solved ? "solved " : "") + "depth %d, %d nodes, %d evaluations, %d cut-offs (%.1f%% first move), "
+                        + "branching factor %.2f, table hits %.0f%%, %d re-searches, %.1f ms, %d nodes/s",
+                depth, nodes, evaluations, cutoffs, 100 * getFirstMoveCutoffRate(),
+                getEffectiveBranchingFactor(), 100 * getTableHitRate(), aspirationResearches,
+                elapsed / 1e6, getNodesPerSecond());
+    }
+}
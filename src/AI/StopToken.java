@@ -0,0 +1,21 @@
+package AI;
+
+/**
+ * StopToken: stops one search
+ *
+ * The caller creates a new token for every search on its own thread and
+ * hands it to the search. stop may be called from any thread at any time,
+ * even before the search has started, and never stops another search.
+ */
+public class StopToken {
+
+    private volatile boolean stopped;
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+}
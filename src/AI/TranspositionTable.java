@@ -0,0 +1,140 @@
+package AI;
+
+/**
+ * TranspositionTable: fixed size hash table of search results
+ *
+ * Entries are keyed by the Zobrist hash of a position (see
+ * GameState.getHash) and packed into a single long so that probing
+ * and storing never allocate:
+ *
+ *   bits  0-31  score
+ *   bits 32-40  best move + 1 (0 = no move)
+ *   bits 41-48  depth
+ *   bits 49-50  bound type
+ *   bits 51-56  search generation
+ *   bit  63     set for every stored entry
+ *
+ * The table can be shared by several search threads without locking:
+ * each slot stores key ^ entry next to the entry, so a slot that is
+ * torn by two concurrent writers no longer matches its key and simply
+ * reads as empty.
+ */
+public class TranspositionTable {
+
+    /**
+     * how an occupied slot is treated when a different position
+     * hashes to it
+     */
+    public enum Replacement {
+        ALWAYS,          // the newest result always wins
+        DEPTH_PREFERRED  // keep deeper results of the current search
+    }
+
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    public static final long NO_ENTRY = 0;
+
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final long STORED = 1L << 63;
+    private static final int GENERATIONS = 64;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+    private final Replacement replacement;
+
+    private int generation;
+
+    /**
+     * @param size: number of entries, rounded down to a power of two
+     * @param replacement: policy for occupied slots
+     */
+    public TranspositionTable(int size, Replacement replacement) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1));
+        keys = new long[capacity];
+        entries = new long[capacity];
+        mask = capacity - 1;
+        this.replacement = replacement;
+    }
+
+    /**
+     * table that uses at most the given amount of memory
+     */
+    public static TranspositionTable withMemory(int megabytes, Replacement replacement) {
+        long size = (long)megabytes * 1024 * 1024 / BYTES_PER_ENTRY;
+        return new TranspositionTable((int)Math.min(size, 1 << 30), replacement);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * start a new search; entries of older searches are
+     * replaced first by the DEPTH_PREFERRED policy
+     */
+    public void newSearch() {
+        generation = (generation + 1) % GENERATIONS;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            entries[i] = NO_ENTRY;
+        }
+    }
+
+    /**
+     * @return the packed entry for the key or NO_ENTRY
+     */
+    public long probe(long key) {
+        int index = (int)key & mask;
+        long entry = entries[index];
+        if ((keys[index] ^ entry) == key)
+            return entry;
+
+        return NO_ENTRY;
+    }
+
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = (int)key & mask;
+        long old = entries[index];
+
+        if (replacement == Replacement.DEPTH_PREFERRED && old != NO_ENTRY
+                && (keys[index] ^ old) != key
+                && getGeneration(old) == generation
+                && getDepth(old) > depth)
+            return;
+
+        long entry = STORED
+                | ((long)generation << 51)
+                | ((long)bound << 49)
+                | ((long)depth << 41)
+                | ((long)(move + 1) << 32)
+                | (score & 0xFFFFFFFFL);
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    public static int getScore(long entry) {
+        return (int)entry;
+    }
+
+    public static int getMove(long entry) {
+        return (int)((entry >>> 32) & 0x1FF) - 1;
+    }
+
+    public static int getDepth(long entry) {
+        return (int)((entry >>> 41) & 0xFF);
+    }
+
+    public static int getBound(long entry) {
+        return (int)((entry >>> 49) & 0x3);
+    }
+
+    private static int getGeneration(long entry) {
+        return (int)((entry >>> 51) & 0x3F);
+    }
+}
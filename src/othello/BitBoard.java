@@ -0,0 +1,251 @@
+package othello;
+
+/**
+ * BitBoard: shift based move generation for boards up to 8 by 8
+ *
+ * Every square (x, y) is mapped to bit x * 8 + y of a long, so a whole
+ * colour fits in a single 64-bit mask. Squares that are outside of a
+ * smaller board are treated like holes: they are never empty and never
+ * hold a piece, which makes them block every line automatically.
+ */
+public final class BitBoard {
+
+    public static final int SIZE = 8;
+    public static final int SQUARES = SIZE * SIZE;
+
+    private static final long NOT_FIRST_COLUMN = 0xFEFEFEFEFEFEFEFEL;
+    private static final long NOT_LAST_COLUMN = 0x7F7F7F7F7F7F7F7FL;
+
+    // y + 1, y - 1, x + 1, x - 1, x + 1 y + 1, x + 1 y - 1, x - 1 y + 1, x - 1 y - 1
+    private static final int[] SHIFTS = {1, -1, 8, -8, 9, 7, -7, -9};
+    private static final long[] MASKS = {NOT_FIRST_COLUMN, NOT_LAST_COLUMN, -1L, -1L,
+            NOT_FIRST_COLUMN, NOT_LAST_COLUMN, NOT_FIRST_COLUMN, NOT_LAST_COLUMN};
+
+    // the squares along the sides of the 8 by 8 board
+    private static final long EDGES = 0xFF818181818181FFL;
+
+    private BitBoard() {}
+
+    public static int square(int x, int y) {
+        return x * SIZE + y;
+    }
+
+    public static int getX(int square) {
+        return square >>> 3;
+    }
+
+    public static int getY(int square) {
+        return square & 7;
+    }
+
+    public static long bit(int x, int y) {
+        return 1L << square(x, y);
+    }
+
+    /**
+     * mask of every square that is not part of a width by height board
+     */
+    public static long offBoardMask(int width, int height) {
+        long onBoard = 0;
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                onBoard |= bit(x, y);
+
+        return ~onBoard;
+    }
+
+    /**
+     * move the given mask one step into direction dir,
+     * dropping anything that would wrap around a row
+     */
+    private static long shift(long mask, int dir) {
+        int s = SHIFTS[dir];
+        return (s > 0 ? mask << s : mask >>> -s) & MASKS[dir];
+    }
+
+    /**
+     * all empty squares that flank at least one opponent line
+     * ending in one of own pieces
+     */
+    public static long moves(long own, long opp, long empty) {
+        long moves = 0;
+
+        for (int dir = 0; dir < 8; dir++) {
+            long line = shift(own, dir) & opp;
+            line |= shift(line, dir) & opp;
+            line |= shift(line, dir) & opp;
+            line |= shift(line, dir) & opp;
+            line |= shift(line, dir) & opp;
+            line |= shift(line, dir) & opp;
+            moves |= shift(line, dir) & empty;
+        }
+
+        return moves;
+    }
+
+    /**
+     * all squares next to a square of the mask, in any of the 8 directions
+     */
+    public static long adjacent(long mask) {
+        long adjacent = 0;
+        for (int dir = 0; dir < 8; dir++)
+            adjacent |= shift(mask, dir);
+        return adjacent;
+    }
+
+    /**
+     * pieces of either colour that can never be flipped
+     *
+     * A piece is stable if along each of the 4 lines through it (vertical,
+     * horizontal and both diagonals) it can't be outflanked: the line is
+     * full between walls, or one of its neighbours on the line is a wall
+     * or a stable piece of the same colour. Starting from no stable
+     * pieces, the set is grown with these rules until nothing changes,
+     * which fills in from the corners and edges. Holes and the sides of
+     * the board are walls.
+     */
+    public static long stable(long black, long white, long holes) {
+        long pieces = black | white;
+        long empty = ~(pieces | holes);
+
+        // a stable region has to start at a wall
+        if ((pieces & (EDGES | adjacent(holes))) == 0)
+            return 0;
+
+        long safe0 = safe(pieces, empty, holes, 0, 1);
+        long safe1 = safe(pieces, empty, holes, 2, 3);
+        long safe2 = safe(pieces, empty, holes, 4, 7);
+        long safe3 = safe(pieces, empty, holes, 5, 6);
+
+        long stable = 0;
+        while (true) {
+            long stableBlack = stable & black;
+            long stableWhite = stable & white;
+
+            long next = pieces
+                    & (safe0 | neighbours(stableBlack, black, 0, 1) | neighbours(stableWhite, white, 0, 1))
+                    & (safe1 | neighbours(stableBlack, black, 2, 3) | neighbours(stableWhite, white, 2, 3))
+                    & (safe2 | neighbours(stableBlack, black, 4, 7) | neighbours(stableWhite, white, 4, 7))
+                    & (safe3 | neighbours(stableBlack, black, 5, 6) | neighbours(stableWhite, white, 5, 6));
+
+            if (next == stable)
+                return stable;
+            stable = next;
+        }
+    }
+
+    /**
+     * squares that can't be outflanked along the line of directions dir
+     * and back: next to a wall, or in a segment of the line without
+     * empty squares
+     */
+    private static long safe(long pieces, long empty, long holes, int dir, int back) {
+        long walls = shift(holes, dir) | shift(holes, back)
+                | ~shift(-1L, dir) | ~shift(-1L, back);
+        long open = fill(empty, pieces, dir) | fill(empty, pieces, back);
+        return walls | ~open;
+    }
+
+    /**
+     * pieces of colour next to one of stable on the line of dir and back
+     */
+    private static long neighbours(long stable, long colour, int dir, int back) {
+        return (shift(stable, dir) | shift(stable, back)) & colour;
+    }
+
+    /**
+     * gen plus every square reached from it by steps in direction dir
+     * through squares of pro, in three doubling steps (Kogge-Stone)
+     */
+    private static long fill(long gen, long pro, int dir) {
+        int s = SHIFTS[dir];
+
+        // a step that wraps around a row ends outside of pro
+        pro &= MASKS[dir];
+        gen |= pro & rawShift(gen, s);
+        pro &= rawShift(pro, s);
+        gen |= pro & rawShift(gen, 2 * s);
+        pro &= rawShift(pro, 2 * s);
+        gen |= pro & rawShift(gen, 4 * s);
+        return gen;
+    }
+
+    private static long rawShift(long mask, int s) {
+        return s > 0 ? mask << s : mask >>> -s;
+    }
+
+    /**
+     * opponent pieces that are flipped when own plays on the given
+     * square; zero if the square does not flip anything
+     */
+    public static long flips(long own, long opp, int square) {
+        long flipped = 0;
+        long start = 1L << square;
+
+        for (int dir = 0; dir < 8; dir++) {
+            long line = 0;
+            long next = shift(start, dir);
+            while ((next & opp) != 0) {
+                line |= next;
+                next = shift(next, dir);
+            }
+            if ((next & own) != 0)
+                flipped |= line;
+        }
+
+        return flipped;
+    }
+
+    /**
+     * apply one of the 8 symmetries of the square board to a mask
+     *
+     * @param symmetry: bit 4 swaps x and y, then bit 1 mirrors x
+     *                  and bit 2 mirrors y
+     */
+    public static long transform(long mask, int symmetry) {
+        if ((symmetry & 4) != 0)
+            mask = transpose(mask);
+        if ((symmetry & 1) != 0)
+            mask = Long.reverseBytes(mask);
+        if ((symmetry & 2) != 0)
+            mask = mirrorY(mask);
+        return mask;
+    }
+
+    /**
+     * undo transform with the same symmetry
+     */
+    public static long inverseTransform(long mask, int symmetry) {
+        if ((symmetry & 2) != 0)
+            mask = mirrorY(mask);
+        if ((symmetry & 1) != 0)
+            mask = Long.reverseBytes(mask);
+        if ((symmetry & 4) != 0)
+            mask = transpose(mask);
+        return mask;
+    }
+
+    /**
+     * y becomes 7 - y: reverse the bits of every byte
+     */
+    private static long mirrorY(long mask) {
+        mask = ((mask >>> 1) & 0x5555555555555555L) | ((mask & 0x5555555555555555L) << 1);
+        mask = ((mask >>> 2) & 0x3333333333333333L) | ((mask & 0x3333333333333333L) << 2);
+        mask = ((mask >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((mask & 0x0F0F0F0F0F0F0F0FL) << 4);
+        return mask;
+    }
+
+    /**
+     * swap x and y
+     */
+    private static long transpose(long mask) {
+        long t;
+        t = 0x0F0F0F0F00000000L & (mask ^ (mask << 28));
+        mask ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (mask ^ (mask << 14));
+        mask ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (mask ^ (mask << 7));
+        mask ^= t ^ (t >>> 7);
+        return mask;
+    }
+}
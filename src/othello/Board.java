@@ -1,66 +1,190 @@
 package othello;
 
-public class Board {
+/**
+ * Board: the squares of a board up to 16 by 16
+ *
+ * create picks the representation: a NarrowBoard keeps each colour of a
+ * board up to 8 by 8 in one 64-bit mask, a WideBoard the larger boards
+ * in several. The AIs only use the square based methods here (square,
+ * generateMoves, countMoves and so on), which work for both. Code written
+ * for the 64-bit masks takes a NarrowBoard, so it can't be handed a
+ * larger board by mistake.
+ */
+public abstract class Board {
+
+    public static final String ERR_BOARD_TOO_LARGE
+            = "The board can't be larger than 16 by 16";
+
+    // square indices of the largest board, see WideBitBoard
+    public static final int MAX_SQUARES = WideBitBoard.SQUARES;
 
     public int width;
     public int height;
     public String situation;
-    private Field[][] board;
 
-    public Board(int width, int height) {
-        board = new Field[width][height];
+    // Zobrist hash of the holes on the board, see getLayoutKey
+    protected long layoutKey;
+
+    /**
+     * only the size, the subclass sets up its squares
+     *
+     * @param maxSize: largest width and height the subclass can keep
+     */
+    protected Board(int width, int height, int maxSize) {
+        if (width > maxSize || height > maxSize)
+            throw new IllegalArgumentException(ERR_BOARD_TOO_LARGE);
+
         this.width = width;
         this.height = height;
-        hardCodedInitialBoard();
     }
 
-    public Board(int width, int height, String situation) {
-        this(width, height);
-        this.situation = situation;
+    /**
+     * copies the size, the subclass copies its squares
+     */
+    protected Board(Board other) {
+        width = other.width;
+        height = other.height;
+        situation = other.situation;
+        layoutKey = other.layoutKey;
     }
 
+    /**
+     * a board of the given size, wide if it doesn't fit in 8 by 8
+     */
+    public static Board create(int width, int height) {
+        if (width > BitBoard.SIZE || height > BitBoard.SIZE)
+            return new WideBoard(width, height);
+        return new NarrowBoard(width, height);
+    }
+
+    /**
+     * copy of the same kind as this board
+     */
+    public abstract Board copy();
+
+    /**
+     * the four starting pieces in the centre of the board
+     */
     public void hardCodedInitialBoard() {
-        board[3][3] = board[4][4] = Field.WHITE;
-        board[3][4] = board[4][3] = Field.BLACK;
+        int x = width / 2 - 1;
+        int y = height / 2 - 1;
+        set(x, y, Field.WHITE);
+        set(x + 1, y + 1, Field.WHITE);
+        set(x, y + 1, Field.BLACK);
+        set(x + 1, y, Field.BLACK);
     }
 
     public void set(int x, int y, Field f) {
-        board[x][y] = f;
+        Field old = get(x, y);
+        place(x, y, f);
+        if (old == Field.HOLE || f == Field.HOLE)
+            updateLayout();
     }
 
-    public Field get(int x, int y) {
-        return board[x][y];
+    /**
+     * turn every square of the rectangle into a hole
+     */
+    public void makeHole(int fromX, int fromY, int toX, int toY) {
+        for (int x = fromX; x <= toX; x++)
+            for (int y = fromY; y <= toY; y++)
+                place(x, y, Field.HOLE);
+        updateLayout();
     }
 
+    /**
+     * set a square, keeping hash and weight totals up to date
+     * but not the tables that depend on the holes
+     */
+    protected abstract void place(int x, int y, Field f);
+
+    public abstract Field get(int x, int y);
+
     public void set(Position pos, Field f) {
-        board[pos.x][pos.y] = f;
+        set(pos.x, pos.y, f);
     }
 
     public Field get(Position pos) {
-        return board[pos.x][pos.y];
+        return get(pos.x, pos.y);
     }
 
     public boolean isPositionOnBoard(Position pos) {
         return pos.x < width && pos.y < height && pos.x >= 0 && pos.y >= 0;
     }
 
+    /**
+     * true for a WideBoard, false for a NarrowBoard
+     */
+    public abstract boolean isWide();
+
+    /**
+     * index of square (x, y), see BitBoard or WideBitBoard for the layout
+     */
+    public abstract int square(int x, int y);
+
+    public abstract int getX(int square);
+
+    public abstract int getY(int square);
+
+    /**
+     * number of square indices, one more than the largest square
+     */
+    public abstract int getSquares();
+
+    /**
+     * moves of the given player as square indices
+     *
+     * @param squares: buffer with room for getSquares entries
+     * @return number of moves written to the buffer
+     */
+    public abstract int generateMoves(Field player, int[] squares);
+
+    public abstract boolean hasMoves(Field player);
+
+    public abstract int countMoves(Field player);
+
+    public abstract boolean isLegalMove(Field player, int square);
+
+    public abstract int countEmpty();
+
+    public abstract long getHash();
+
+    /**
+     * sum of the square weights of the player's pieces
+     */
+    public abstract int getPositionWeight(Field player);
+
+    public abstract int countPieces(Field player);
+
+    /**
+     * pieces of the player that can't be flipped because of where they
+     * are, see SquareWeights.isCorner
+     */
+    public abstract int countCorners(Field player);
+
+    /**
+     * the square weights and corners follow the playable area, so they
+     * are computed again whenever the holes change
+     */
+    protected abstract void updateLayout();
+
+    /**
+     * changes with the holes; boards of the same size and kind with the
+     * same key have the same playable area
+     */
+    public long getLayoutKey() {
+        return layoutKey;
+    }
+
     public Field[][] getBoard() {
         Field[][] clonedBoard = new Field[width][height];
 
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
-                if (board[x][y] == null || board[x][y] == null) {
-                    clonedBoard[x][y] = Field.HOLE;
-                } else if (board[x][y] == Field.BLACK) {
-                    clonedBoard[x][y] = Field.BLACK;
-                } else if (board[x][y] == Field.WHITE) {
-                    clonedBoard[x][y] = Field.WHITE;
-                } else if (board[x][y] == Field.HOLE) {
-                    clonedBoard[x][y] = Field.HOLE;
-                }
+                Field tile = get(x, y);
+                clonedBoard[x][y] = (tile == null) ? Field.HOLE : tile;
             }
         }
 
         return clonedBoard;
     }
-}
\ No newline at end of file
+}
@@ -7,13 +7,21 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class Controller implements ActionListener {
 
     private static final int DELAY = 50;
 
+    // optional, see tools.BookBuilder
+    private static final String OPENING_BOOK_FILE = "opening.book";
+
     private Queue<Position> queue;
 
     private static final int ROW = 0;
@@ -22,6 +30,17 @@ public class Controller implements ActionListener {
     private AI miniMaxAI;
     private AI miniMaxAlphaBetaAI;
 
+    // both AIs search on their own background thread
+    private AsyncAI asyncMiniMax;
+    private AsyncAI asyncAlphaBeta;
+
+    // counts ENTER resets, moves found for an older game are dropped
+    private int resets;
+
+    // from asking an AI for a move until it is played, so that a click
+    // in between isn't taken as the human's move; event thread only
+    private boolean waitingForAI;
+
     private boolean playAgainstUtilityHeuristic;
     private boolean playAgainstPieceCounterHeuristic;
     private boolean highlightTiles;
@@ -35,7 +54,13 @@ public class Controller implements ActionListener {
         highlightTiles = false;
         this.model = model;
         miniMaxAI = new MiniMaxAI();
-        miniMaxAlphaBetaAI = new MiniMaxAlphaBetaAI();
+        MiniMaxAlphaBetaAI alphaBeta = new MiniMaxAlphaBetaAI();
+        alphaBeta.setOpeningBook(OpeningBook.open(Paths.get(OPENING_BOOK_FILE)));
+        miniMaxAlphaBetaAI = alphaBeta;
+        // reads the weights of tools.Tuner now, later strategies share them
+        HeuristicPattern.preload(Paths.get(HeuristicPattern.DEFAULT_FILE));
+        asyncMiniMax = new AsyncAI(miniMaxAI);
+        asyncAlphaBeta = new AsyncAI(miniMaxAlphaBetaAI);
         keyPress = new TAdapter();
         queue = new LinkedList<Position>();
         setTimer();
@@ -46,6 +71,14 @@ public class Controller implements ActionListener {
         return keyPress;
     }
 
+    /**
+     * receive the progress of every AI search, on the search thread
+     */
+    public void setSearchListener(SearchListener listener) {
+        miniMaxAI.setSearchListener(listener);
+        miniMaxAlphaBetaAI.setSearchListener(listener);
+    }
+
 
     private void setTimer() {
         Timer timer = new Timer(DELAY, this);
@@ -62,6 +95,99 @@ public class Controller implements ActionListener {
         } catch (Exception ignored) {}
     }
 
+    /**
+     * an AI is searching, or has found its move but not played it yet
+     */
+    private boolean isSearching() {
+        return waitingForAI || asyncMiniMax.isSearching() || asyncAlphaBeta.isSearching();
+    }
+
+    /**
+     * search a move in the background and play it on the event thread
+     *
+     * @param then: run after the move was played, may be null
+     */
+    private void playAIMove(final AsyncAI ai, final String player, final Runnable then) throws Exception {
+        if (!model.isRunning())
+            return;
+
+        final int game = resets;
+        final long position = model.getHash();
+
+        waitingForAI = true;
+        CompletableFuture<Position> search;
+        try {
+            search = ai.selectMove(model);
+        } catch (Exception ex) {
+            waitingForAI = false;
+            throw ex;
+        }
+
+        search.thenAccept(new Consumer<Position>() {
+            @Override
+            public void accept(final Position move) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the game was reset in the meantime, which
+                        // already stopped waiting
+                        if (resets != game)
+                            return;
+
+                        boolean current = model.getHash() == position;
+                        if (current)
+                            playMove(move, player);
+                        waitingForAI = false;
+                        if (!current)
+                            return;
+
+                        if (highlightTiles)
+                            model.highlightTiles(ai.getAI().getSearchHeatmap());
+                        printMsg(player + ": " + ai.getAI().getLastSearchStats());
+
+                        if (then != null)
+                            then.run();
+                    }
+                });
+            }
+        }).exceptionally(new Function<Throwable, Void>() {
+            @Override
+            public Void apply(Throwable ex) {
+                // cancelled by a reset, nothing went wrong
+                if (ex instanceof CancellationException || ex.getCause() instanceof CancellationException)
+                    return null;
+
+                printMsg(player + " failed to find a move");
+                ex.printStackTrace();
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (resets == game)
+                            waitingForAI = false;
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * let first and second take turns until the game is over
+     */
+    private void playAlternately(final AsyncAI first, final String firstPlayer,
+                                 final AsyncAI second, final String secondPlayer) throws Exception {
+        playAIMove(first, firstPlayer, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    playAlternately(second, secondPlayer, first, firstPlayer);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+    }
+
 
     private class TAdapter extends KeyAdapter {
 
@@ -69,9 +195,17 @@ public class Controller implements ActionListener {
 
             int key = e.getKeyCode();
 
+            // one search at a time, only a reset interrupts it
+            if (key != KeyEvent.VK_ENTER && isSearching())
+                return;
+
             try {
                 switch(key) {
                     case KeyEvent.VK_ENTER:
+                        asyncMiniMax.cancel();
+                        asyncAlphaBeta.cancel();
+                        resets++;
+                        waitingForAI = false;
                         model.resetGame();
                         return;
                     case KeyEvent.VK_SPACE:
@@ -79,46 +213,29 @@ public class Controller implements ActionListener {
                     case KeyEvent.VK_ESCAPE:
                         return;
                     case KeyEvent.VK_1: // MiniMax Makes 1 Move
-                        playMove(miniMaxAI.selectMove(model), "MiniMax");
-                        if (highlightTiles)
-                            model.highlightTiles(miniMaxAI.getPreviouslyVisitedNodes());
-                        printMsg("Nodes Visited (MiniMax): " + miniMaxAI.getNumOfPositionsVisitedLastMove());
+                        playAIMove(asyncMiniMax, "MiniMax", null);
                         return;
                     case KeyEvent.VK_2: // Alpha-Beta Makes 1 Move
-                        playMove(miniMaxAlphaBetaAI.selectMove(model), "AlphaBeta");
-                        if (highlightTiles)
-                            model.highlightTiles(miniMaxAlphaBetaAI.getPreviouslyVisitedNodes());
-                        printMsg("Nodes Visited (Alpha-Beta): " + miniMaxAlphaBetaAI.getNumOfPositionsVisitedLastMove());
+                        playAIMove(asyncAlphaBeta, "Alpha-Beta", null);
                         return;
                     case KeyEvent.VK_3: // Play complete game with miniMax AI
-                        while (model.isRunning()) {
-                            playMove(miniMaxAI.selectMove(model), "MiniMax");
-                            printMsg("Nodes visited: " + miniMaxAI.getNumOfPositionsVisitedLastMove());
-                        }
+                        playAlternately(asyncMiniMax, "MiniMax", asyncMiniMax, "MiniMax");
                         return;
                     case KeyEvent.VK_4: // Play complete game with Alpha-Beta AI
-                        while (model.isRunning()) {
-                            playMove(miniMaxAlphaBetaAI.selectMove(model), "AlphaBeta");
-                            printMsg("Nodes visited: " + miniMaxAlphaBetaAI.getNumOfPositionsVisitedLastMove());
-                        }
+                        playAlternately(asyncAlphaBeta, "AlphaBeta", asyncAlphaBeta, "AlphaBeta");
                         return;
                     case KeyEvent.VK_5: // Play complete game with MiniMax vs Alpha-Beta
                         printMsg("MiniMaxAI = BLACK, MiniMaxAlphaBetaAI = WHITE");
-                        while (model.isRunning()) {
-                            playMove(miniMaxAI.selectMove(model), "MiniMax");
-                            printMsg("Nodes visited (MiniMax): " + miniMaxAI.getNumOfPositionsVisitedLastMove());
-                            playMove(miniMaxAlphaBetaAI.selectMove(model), "AlphaBeta");
-                            printMsg("Nodes visited (Alpha-beta): " + miniMaxAlphaBetaAI.getNumOfPositionsVisitedLastMove());
-                        }
+                        playAlternately(asyncMiniMax, "MiniMax", asyncAlphaBeta, "Alpha-beta");
                         return;
                     case KeyEvent.VK_6: // Set the Alpha-Beta Heuristic to Piece Counter
-                        miniMaxAlphaBetaAI.setStrategy(new HeuristicPieceCounter());
+                        asyncAlphaBeta.setStrategy(new HeuristicPieceCounter());
                         playAgainstPieceCounterHeuristic = !playAgainstPieceCounterHeuristic;
                         playAgainstUtilityHeuristic = false;
                         printMsg("Playing against Alpha-Beta Piece Counter Heuristic");
                         return;
                     case KeyEvent.VK_7: // Set Alpha-Beta Heuristic to Utility
-                        miniMaxAlphaBetaAI.setStrategy(new HeuristicUtility());
+                        asyncAlphaBeta.setStrategy(new HeuristicUtility());
                         playAgainstUtilityHeuristic = !playAgainstUtilityHeuristic;
                         playAgainstPieceCounterHeuristic = false;
                         printMsg("Playing against Utility Heuristic");
@@ -126,19 +243,24 @@ public class Controller implements ActionListener {
                     case KeyEvent.VK_8:
                         return;
                     case KeyEvent.VK_P:
-                        miniMaxAI.setStrategy(new HeuristicPieceCounter());
-                        miniMaxAlphaBetaAI.setStrategy(new HeuristicPieceCounter());
+                        asyncMiniMax.setStrategy(new HeuristicPieceCounter());
+                        asyncAlphaBeta.setStrategy(new HeuristicPieceCounter());
                         printMsg("Heuristics set to: Piece Counter");
                         return;
                     case KeyEvent.VK_U:
-                        miniMaxAI.setStrategy(new HeuristicUtility());
-                        miniMaxAlphaBetaAI.setStrategy(new HeuristicUtility());
+                        asyncMiniMax.setStrategy(new HeuristicUtility());
+                        asyncAlphaBeta.setStrategy(new HeuristicUtility());
                         printMsg("Heuristics set to: Utility");
                         return;
                     case KeyEvent.VK_T:
-                        miniMaxAlphaBetaAI.setStrategy(new HeuristicUtility());
+                        asyncAlphaBeta.setStrategy(new HeuristicUtility());
                         printMsg("MiniMax Alpha-Beta Heuristic set to: Utility");
                         return;
+                    case KeyEvent.VK_L:
+                        asyncMiniMax.setStrategy(new HeuristicPattern(Paths.get(HeuristicPattern.DEFAULT_FILE)));
+                        asyncAlphaBeta.setStrategy(new HeuristicPattern(Paths.get(HeuristicPattern.DEFAULT_FILE)));
+                        printMsg("Heuristics set to: Pattern");
+                        return;
                     case KeyEvent.VK_H:
                         highlightTiles = !highlightTiles;
                         return;
@@ -160,6 +282,10 @@ public class Controller implements ActionListener {
 
         if(e.getSource() instanceof JButton) {
 
+            // the AI is thinking, it is not the human's turn
+            if (isSearching())
+                return;
+
             String userInput = e.getActionCommand();
 
             try {
@@ -172,10 +298,20 @@ public class Controller implements ActionListener {
 
                 if (playAgainstUtilityHeuristic ||
                         playAgainstPieceCounterHeuristic) {
-                    playMove(miniMaxAlphaBetaAI.selectMove(model), "AlphaBeta");
-                    if (highlightTiles)
-                        model.highlightTiles(miniMaxAlphaBetaAI.getPreviouslyVisitedNodes());
-                    printMsg("Nodes visited (Alpha-beta): " + miniMaxAlphaBetaAI.getNumOfPositionsVisitedLastMove());
+                    final Field computer = model.getCurrentPlayer();
+                    playAIMove(asyncAlphaBeta, "Alpha-beta", new Runnable() {
+                        @Override
+                        public void run() {
+                            // think about the replies while the human thinks
+                            if (model.isRunning() && model.getCurrentPlayer() != computer) {
+                                try {
+                                    asyncAlphaBeta.ponder(model);
+                                } catch (Exception ex) {
+                                    ex.printStackTrace();
+                                }
+                            }
+                        }
+                    });
                 }
             } catch (Exception ex) {
                 ex.printStackTrace();
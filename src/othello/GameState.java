@@ -0,0 +1,253 @@
+package othello;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GameState: board, player to move and move history of a game,
+ * without any observers
+ *
+ * This is what the AIs and tools search on. OthelloModel keeps one for
+ * the game that is shown and is the only one that notifies the View;
+ * a copy of a GameState can be played on freely from any thread.
+ */
+public class GameState {
+
+    public static final String ERR_NO_ACTIVE_GAME
+            = "No active game";
+
+    public static final String ERR_OFF_BOARD_MOVE
+            = "The move position has to be on the board";
+
+    private Field currentPlayer;
+
+    private boolean isRunning;
+
+    private Board board;
+
+    // the same board as the kind it is, the other one is null
+    private NarrowBoard narrow;
+    private WideBoard wide;
+
+    // undo records for makeMove: flipped pieces plus square and mover
+    private static final int UNDO_WHITE = 1 << 8;
+    private long[] undoFlips;
+    private int[] undoMoves;
+    private int undoCount;
+
+    public GameState(int width, int height) {
+        board = Board.create(width, height);
+        setKind();
+        currentPlayer = Field.BLACK;
+        isRunning = true;
+        undoFlips = new long[BitBoard.SQUARES];
+        undoMoves = new int[BitBoard.SQUARES];
+        checkState();
+    }
+
+    /**
+     * deep copy, including the moves that can be undone
+     */
+    public GameState(GameState other) {
+        board = other.board.copy();
+        setKind();
+        currentPlayer = other.currentPlayer;
+        isRunning = other.isRunning;
+        undoFlips = other.undoFlips.clone();
+        undoMoves = other.undoMoves.clone();
+        undoCount = other.undoCount;
+    }
+
+    private void setKind() {
+        narrow = board.isWide() ? null : (NarrowBoard)board;
+        wide = board.isWide() ? (WideBoard)board : null;
+    }
+
+    /**
+     * pass if black can't move on the initial board, or end the game
+     */
+    void checkState() {
+        if (!isMovePossible(Field.BLACK)) {
+            if (!isMovePossible(Field.WHITE)) {
+                this.isRunning = false;
+            } else {
+                this.currentPlayer = Field.WHITE;
+            }
+        }
+    }
+
+    private boolean isMovePossible(Field player) {
+        return board.hasMoves(player);
+    }
+
+    public List<Position> getPossibleMoves(Field player) {
+        if (!isRunning) {
+            throw new IllegalStateException(ERR_NO_ACTIVE_GAME);
+        }
+
+        List<Position> possibleMoves = new ArrayList<Position>();
+
+        int[] squares = new int[board.getSquares()];
+        int count = board.generateMoves(player, squares);
+        for (int i = 0; i < count; i++)
+            possibleMoves.add(new Position(board.getX(squares[i]), board.getY(squares[i])));
+
+        return possibleMoves;
+    }
+
+    public void nextPlayer() {
+        if (!isRunning)
+            throw new IllegalStateException(ERR_NO_ACTIVE_GAME);
+
+        currentPlayer = (currentPlayer == Field.BLACK) ? Field.WHITE : Field.BLACK;
+    }
+
+    /**
+     * play a move for the current player; unlike makeMove it can't be undone
+     *
+     * @return -1 if the move is illegal, 0 if the opponent is next,
+     *         1 if the opponent has to pass, 2 if the game is over
+     */
+    public int move(Position pos) {
+        if (!isRunning)
+            throw new IllegalStateException(ERR_NO_ACTIVE_GAME);
+
+        if (!board.isPositionOnBoard(pos))
+            throw new IllegalArgumentException(ERR_OFF_BOARD_MOVE);
+
+        int square = board.square(pos.x, pos.y);
+        if (wide != null)
+            return wide.play(currentPlayer, square) ? next() : -1;
+
+        long flips = narrow.getFlips(currentPlayer, square);
+        if (flips == 0)
+            return -1;
+
+        return play(square, flips);
+    }
+
+    /**
+     * moves of the current player as square indices,
+     * see Board.square for the layout
+     *
+     * @param squares: buffer with room for every square of the board
+     * @return number of moves written to the buffer
+     */
+    public int generateMoves(int[] squares) {
+        return board.generateMoves(currentPlayer, squares);
+    }
+
+    /**
+     * play a move for the current player so that it can be taken back
+     * with undoMove. Used by the AIs to search on a single game state.
+     *
+     * @return same codes as move
+     */
+    public int makeMove(int square) {
+        if (!isRunning)
+            throw new IllegalStateException(ERR_NO_ACTIVE_GAME);
+
+        if (wide != null)
+            return wide.play(currentPlayer, square) ? next() : -1;
+
+        long flips = narrow.getFlips(currentPlayer, square);
+        if (flips == 0)
+            return -1;
+
+        undoFlips[undoCount] = flips;
+        undoMoves[undoCount] = square | (currentPlayer == Field.WHITE ? UNDO_WHITE : 0);
+        undoCount++;
+
+        return play(square, flips);
+    }
+
+    /**
+     * take back the last move played with makeMove
+     */
+    public void undoMove() {
+        if (wide != null) {
+            currentPlayer = wide.takeBack();
+            isRunning = true;
+            return;
+        }
+
+        undoCount--;
+        int square = undoMoves[undoCount] & 0xFF;
+        Field player = (undoMoves[undoCount] & UNDO_WHITE) != 0 ? Field.WHITE : Field.BLACK;
+
+        narrow.undoFlips(player, square, undoFlips[undoCount]);
+        currentPlayer = player;
+        isRunning = true;
+    }
+
+    private int play(int square, long flips) {
+        narrow.applyFlips(currentPlayer, square, flips);
+        return next();
+    }
+
+    /**
+     * hand the turn over after a move, passing or ending the game
+     */
+    private int next() {
+        nextPlayer();
+
+        if (!isMovePossible(getCurrentPlayer())) {
+            Field nextPlayer = getWaitingPlayer();
+            if (isMovePossible(nextPlayer)) {
+                nextPlayer();
+                return 1;
+            } else {
+                setFinished();
+                return 2;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Zobrist hash of the board and the player to move
+     */
+    public long getHash() {
+        return board.getHash() ^ (currentPlayer == Field.WHITE ? Zobrist.SIDE : 0);
+    }
+
+    public Field getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public Field getOpponentPlayer() {
+        return (currentPlayer == Field.WHITE) ? Field.BLACK : Field.WHITE;
+    }
+
+    public Field getWaitingPlayer() {
+        return (getCurrentPlayer() == Field.BLACK) ? Field.WHITE : Field.BLACK;
+    }
+
+    public int countPieces(Field player) {
+        return board.countPieces(player);
+    }
+
+    /**
+     * @return black and white pieces
+     */
+    public int[] getScore() {
+        int[] score = new int[2];
+        score[0] = countPieces(Field.BLACK);
+        score[1] = countPieces(Field.WHITE);
+        return score;
+    }
+
+    public void setFinished() {
+        if (!isRunning)
+            throw new IllegalStateException(ERR_NO_ACTIVE_GAME);
+        isRunning = false;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+}
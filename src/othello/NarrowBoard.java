@@ -0,0 +1,292 @@
+package othello;
+
+/**
+ * NarrowBoard: the squares of a board up to 8 by 8 as bitboards
+ *
+ * Each colour and the holes are one 64-bit mask, see BitBoard for the
+ * layout. Besides the square based methods of Board it hands out these
+ * masks, and moves are played by applying the flipped pieces to them.
+ */
+public class NarrowBoard extends Board {
+
+    // one bit per square, see BitBoard for the layout
+    private long black;
+    private long white;
+    private long holes;
+
+    // Zobrist hash of the squares, updated with every change
+    private long hash;
+
+    // sum of the square weights of each colour, updated with every change
+    private int[] squareWeights;
+    private int blackWeight;
+    private int whiteWeight;
+
+    // squares whose pieces can't be flipped, for the current holes
+    private long corners;
+
+    public NarrowBoard(int width, int height) {
+        super(width, height, BitBoard.SIZE);
+        holes = BitBoard.offBoardMask(width, height);
+        hash = Zobrist.hash(black, white, holes);
+        updateLayout();
+        hardCodedInitialBoard();
+    }
+
+    /**
+     * copy constructor
+     */
+    public NarrowBoard(NarrowBoard other) {
+        super(other);
+        black = other.black;
+        white = other.white;
+        holes = other.holes;
+        hash = other.hash;
+        squareWeights = other.squareWeights;
+        blackWeight = other.blackWeight;
+        whiteWeight = other.whiteWeight;
+        corners = other.corners;
+    }
+
+    public NarrowBoard(int width, int height, String situation) {
+        this(width, height);
+        this.situation = situation;
+    }
+
+    @Override
+    public Board copy() {
+        return new NarrowBoard(this);
+    }
+
+    @Override
+    protected void place(int x, int y, Field f) {
+        int square = BitBoard.square(x, y);
+        long bit = 1L << square;
+
+        Field old = get(x, y);
+        hash ^= Zobrist.key(old, square) ^ Zobrist.key(f, square);
+        addWeight(old, -squareWeights[square]);
+        addWeight(f, squareWeights[square]);
+
+        black &= ~bit;
+        white &= ~bit;
+        holes &= ~bit;
+
+        if (f == Field.BLACK)
+            black |= bit;
+        else if (f == Field.WHITE)
+            white |= bit;
+        else if (f == Field.HOLE)
+            holes |= bit;
+    }
+
+    @Override
+    public Field get(int x, int y) {
+        long bit = BitBoard.bit(x, y);
+
+        if ((black & bit) != 0)
+            return Field.BLACK;
+        else if ((white & bit) != 0)
+            return Field.WHITE;
+        else if ((holes & bit) != 0)
+            return Field.HOLE;
+
+        return null;
+    }
+
+    @Override
+    public boolean isWide() {
+        return false;
+    }
+
+    @Override
+    public int square(int x, int y) {
+        return BitBoard.square(x, y);
+    }
+
+    @Override
+    public int getX(int square) {
+        return BitBoard.getX(square);
+    }
+
+    @Override
+    public int getY(int square) {
+        return BitBoard.getY(square);
+    }
+
+    @Override
+    public int getSquares() {
+        return BitBoard.SQUARES;
+    }
+
+    @Override
+    public int generateMoves(Field player, int[] squares) {
+        int count = 0;
+
+        long moves = getMoves(player);
+        while (moves != 0) {
+            squares[count++] = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+        }
+
+        return count;
+    }
+
+    @Override
+    public boolean hasMoves(Field player) {
+        return getMoves(player) != 0;
+    }
+
+    @Override
+    public int countMoves(Field player) {
+        return Long.bitCount(getMoves(player));
+    }
+
+    @Override
+    public boolean isLegalMove(Field player, int square) {
+        return getFlips(player, square) != 0;
+    }
+
+    @Override
+    public int countEmpty() {
+        return Long.bitCount(getEmpty());
+    }
+
+    /**
+     * pieces of the given player as a bit mask
+     */
+    public long getPieces(Field player) {
+        return (player == Field.BLACK) ? black : white;
+    }
+
+    public long getHoles() {
+        return holes;
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int getPositionWeight(Field player) {
+        return (player == Field.BLACK) ? blackWeight : whiteWeight;
+    }
+
+    public long getEmpty() {
+        return ~(black | white | holes);
+    }
+
+    /**
+     * all squares the given player can move to
+     */
+    public long getMoves(Field player) {
+        long own = getPieces(player);
+        long opp = (player == Field.BLACK) ? white : black;
+        return BitBoard.moves(own, opp, getEmpty());
+    }
+
+    /**
+     * pieces that would be flipped if player moved to the given
+     * square; zero if the move is not legal
+     */
+    public long getFlips(Field player, int square) {
+        if ((getEmpty() & (1L << square)) == 0)
+            return 0;
+
+        long own = getPieces(player);
+        long opp = (player == Field.BLACK) ? white : black;
+        return BitBoard.flips(own, opp, square);
+    }
+
+    /**
+     * place a piece for player and flip the given pieces
+     */
+    public void applyFlips(Field player, int square, long flips) {
+        if (player == Field.BLACK) {
+            black |= flips | (1L << square);
+            white &= ~flips;
+        } else {
+            white |= flips | (1L << square);
+            black &= ~flips;
+        }
+        updateTotals(player, square, flips, 1);
+    }
+
+    /**
+     * take back a move made with applyFlips
+     */
+    public void undoFlips(Field player, int square, long flips) {
+        if (player == Field.BLACK) {
+            black &= ~(flips | (1L << square));
+            white |= flips;
+        } else {
+            white &= ~(flips | (1L << square));
+            black |= flips;
+        }
+        updateTotals(player, square, flips, -1);
+    }
+
+    /**
+     * update hash and weights for a piece of player placed on (sign 1)
+     * or removed from (sign -1) square, flipping the given pieces
+     */
+    private void updateTotals(Field player, int square, long flips, int sign) {
+        long hashChange = Zobrist.key(player, square);
+        int flipped = 0;
+
+        while (flips != 0) {
+            int s = Long.numberOfTrailingZeros(flips);
+            flips &= flips - 1;
+            hashChange ^= Zobrist.BLACK[s] ^ Zobrist.WHITE[s];
+            flipped += squareWeights[s];
+        }
+
+        hash ^= hashChange;
+        if (player == Field.BLACK) {
+            blackWeight += sign * (squareWeights[square] + flipped);
+            whiteWeight -= sign * flipped;
+        } else {
+            whiteWeight += sign * (squareWeights[square] + flipped);
+            blackWeight -= sign * flipped;
+        }
+    }
+
+    private void addWeight(Field player, int weight) {
+        if (player == Field.BLACK)
+            blackWeight += weight;
+        else if (player == Field.WHITE)
+            whiteWeight += weight;
+    }
+
+    @Override
+    public int countPieces(Field player) {
+        return Long.bitCount(getPieces(player));
+    }
+
+    @Override
+    public int countCorners(Field player) {
+        return Long.bitCount(getPieces(player) & corners);
+    }
+
+    @Override
+    protected void updateLayout() {
+        squareWeights = SquareWeights.forBoard(this);
+
+        corners = 0;
+        layoutKey = 0;
+        blackWeight = 0;
+        whiteWeight = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int square = BitBoard.square(x, y);
+                Field tile = get(x, y);
+                if (tile == Field.HOLE)
+                    layoutKey ^= Zobrist.HOLE[square];
+                else if (SquareWeights.isCorner(this, x, y))
+                    corners |= 1L << square;
+                addWeight(tile, squareWeights[square]);
+            }
+        }
+    }
+}
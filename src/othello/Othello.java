@@ -13,6 +13,7 @@ public class Othello {
         model.addObserver(view);
         view.addController(controller);
         view.addKeyListener(controller.getKeyListener());
+        controller.setSearchListener(view);
         model.updateBoard();
     }
 }
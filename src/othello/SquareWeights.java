@@ -0,0 +1,88 @@
+package othello;
+
+/**
+ * SquareWeights: value of owning a square
+ *
+ * Corners are most valuable, followed by the sides. Squares next to a
+ * corner are bad, since they give the corner away.
+ *
+ * Other boards use the same values by distance to the walls: a square
+ * gets the CLASSIC value of the square that is as far from the nearest
+ * sides of the 8 by 8 board, and everything deeper inside than that
+ * counts like the centre. Holes are walls too, so the squares around a
+ * hole count like sides and corners of a smaller board.
+ */
+public final class SquareWeights {
+
+    public static final int[][] CLASSIC =
+            new int[][] {{20, -3, 11,  8,  8, 11, -3, 20},
+                         {-3, -7, -4,  1,  1, -4, -7, -3},
+                         {11, -4,  2,  2,  2,  2, -4, 11},
+                         {8,   1,  2, -3, -3,  2,  1,  8},
+                         {8,   1,  2, -3, -3,  2,  1,  8},
+                         {11, -4,  2,  2,  2,  2, -4, 11},
+                         {-3, -7, -4,  1,  1, -4, -7, -3},
+                         {20, -3, 11,  8,  8, 11, -3, 20}};
+
+    private SquareWeights() {}
+
+    /**
+     * weights of the squares of a board with its holes, indexed by
+     * square (see Board.square); holes are worth nothing
+     */
+    public static int[] forBoard(Board board) {
+        int[] weights = new int[board.getSquares()];
+        for (int x = 0; x < board.width; x++) {
+            for (int y = 0; y < board.height; y++) {
+                if (board.get(x, y) == Field.HOLE)
+                    continue;
+                int foldX = Math.min(wallDistance(board, x, y, 1, 0), wallDistance(board, x, y, -1, 0));
+                int foldY = Math.min(wallDistance(board, x, y, 0, 1), wallDistance(board, x, y, 0, -1));
+                weights[board.square(x, y)] = CLASSIC[clamp(foldX)][clamp(foldY)];
+            }
+        }
+
+        return weights;
+    }
+
+    /**
+     * weight of square (x, y) of a width by height board without holes
+     */
+    public static int weight(int x, int y, int width, int height) {
+        return CLASSIC[clamp(Math.min(x, width - 1 - x))][clamp(Math.min(y, height - 1 - y))];
+    }
+
+    /**
+     * playable squares between (x, y) and the nearest side or hole
+     * in direction (dx, dy)
+     */
+    public static int wallDistance(Board board, int x, int y, int dx, int dy) {
+        int distance = 0;
+        for (x += dx, y += dy; !isWall(board, x, y); x += dx, y += dy)
+            distance++;
+
+        return distance;
+    }
+
+    /**
+     * whether a piece on (x, y) can never be flipped: on each of the
+     * four lines through it, one of its neighbours is a wall
+     */
+    public static boolean isCorner(Board board, int x, int y) {
+        return (isWall(board, x + 1, y) || isWall(board, x - 1, y))
+                && (isWall(board, x, y + 1) || isWall(board, x, y - 1))
+                && (isWall(board, x + 1, y + 1) || isWall(board, x - 1, y - 1))
+                && (isWall(board, x + 1, y - 1) || isWall(board, x - 1, y + 1));
+    }
+
+    private static boolean isWall(Board board, int x, int y) {
+        return x < 0 || y < 0 || x >= board.width || y >= board.height || board.get(x, y) == Field.HOLE;
+    }
+
+    /**
+     * distances deeper than the centre of CLASSIC count like the centre
+     */
+    private static int clamp(int distance) {
+        return Math.min(distance, CLASSIC.length / 2 - 1);
+    }
+}
@@ -1,5 +1,7 @@
 package othello;
 
+import AI.SearchListener;
+
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.Border;
@@ -7,6 +9,7 @@ import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.Observable;
 import java.util.Observer;
@@ -17,7 +20,7 @@ import java.util.Observer;
  * @author kevinrosengren
  *
  */
-public class View extends JFrame implements Observer {
+public class View extends JFrame implements Observer, SearchListener {
 
     private static final int HEADER_HEIGHT = 20;
     private static final int WINDOW_WIDTH = 600;
@@ -37,17 +40,34 @@ public class View extends JFrame implements Observer {
     private static final int BOARD_WIDTH = 8;
     private static final int BOARD_HEIGHT = 8;
 
+    // updates that arrive within one frame are drawn together
+    private static final int FRAME_MILLISECONDS = 16;
+
     private JPanel boardPanel;
     private JPanel scorePanel;
 
     private JLabel scoreField;
     private JLabel blackScore;
     private JLabel whiteScore;
+    private JLabel searchField;
 
     private JButton[][] tiles;
 
     private Image blackDisc;
     private Image whiteDisc;
+    private ImageIcon blackIcon;
+    private ImageIcon whiteIcon;
+
+    private Timer frameTimer;
+
+    // latest state from the model, guarded by this, drawn on the next frame
+    private long pendingBlack, pendingWhite, pendingHoles;
+    private int[] pendingHeatmap;
+    private boolean colorsPending;
+
+    // what the tiles show, only used on the event dispatch thread
+    private long shownBlack, shownWhite, shownHoles;
+    private int whiteCount, blackCount;
 
 
     /**
@@ -61,6 +81,7 @@ public class View extends JFrame implements Observer {
         initIconImages();
         initScoreBoard();
         initBoardLayout();
+        initFrameTimer();
         initWindow();
     }
 
@@ -77,6 +98,9 @@ public class View extends JFrame implements Observer {
             whiteDisc = ImageIO.read(getClass().getResource(WHITE_DISC_FILE_PATH));
             whiteDisc = whiteDisc.getScaledInstance(ICON_WIDTH, ICON_HEIGHT, Image.SCALE_SMOOTH);
 
+            blackIcon = new ImageIcon(blackDisc);
+            whiteIcon = new ImageIcon(whiteDisc);
+
         } catch (Exception e) {
             System.out.println("Could not load icon images");
             JOptionPane.showMessageDialog(this, "Error: The game could not locate the images:\n\n\t\t\t\t" + BLACK_DISC_FILE_PATH
@@ -98,10 +122,12 @@ public class View extends JFrame implements Observer {
 
         whiteScore = new JLabel("White: 0");
         blackScore = new JLabel("Black: 0");
+        searchField = new JLabel("");
 
         scorePanel.add(scoreField);
         scorePanel.add(whiteScore);
         scorePanel.add(blackScore);
+        scorePanel.add(searchField);
     }
 
 
@@ -176,6 +202,20 @@ public class View extends JFrame implements Observer {
         return button;
     }
 
+    /**
+     * one-shot timer that draws the pending updates,
+     * started by the first update after a frame
+     */
+    private void initFrameTimer() {
+        frameTimer = new Timer(FRAME_MILLISECONDS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawFrame();
+            }
+        });
+        frameTimer.setRepeats(false);
+    }
+
     /**
      * initialize window properties
      * and set it to visible
@@ -205,39 +245,67 @@ public class View extends JFrame implements Observer {
      */
     public void displayPiece(int row, int col, Field color) {
         if (color == Field.BLACK)
-            tiles[row][col].setIcon(new ImageIcon(blackDisc));
+            tiles[row][col].setIcon(blackIcon);
         else if (color == Field.WHITE)
-            tiles[row][col].setIcon(new ImageIcon(whiteDisc));
-        else if (color == Field.HOLE)
+            tiles[row][col].setIcon(whiteIcon);
+        else
             tiles[row][col].setIcon(null);
     }
 
+    /**
+     * checkered color of a tile without highlighting
+     */
+    private static Color tileColor(int row, int col) {
+        return ((row + col) % 2 == 0) ? DARK_COLORED_TILE : LIGHT_COLORED_TILE;
+    }
+
     public void resetBoardColors() {
+        for (int row = 0; row < tiles.length; row++)
+            for (int col = 0; col < tiles[row].length; col++)
+                colorTile(row, col, tileColor(row, col));
+    }
+
+    /**
+     * tint every tile towards the highlight color,
+     * the more the larger its value is
+     *
+     * @param heatmap: a value per square, see BitBoard
+     */
+    public void displayHeatmap(int[] heatmap) {
+        int max = 0;
+        for (int value : heatmap)
+            max = Math.max(max, value);
+
         for (int row = 0; row < tiles.length; row++) {
-            if (row % 2 == 0) {
-                for (int col = 0; col < tiles[row].length; col++) {
-                    if (col % 2 == 0) { // even
-                        colorTile(row, col, DARK_COLORED_TILE);
-                    } else {
-                        colorTile(row, col, LIGHT_COLORED_TILE);
-                    }
-                }
-            } else {
-                for (int col = 0; col < tiles[row].length; col++) {
-                    if (col % 2 == 0) { // even
-                        colorTile(row, col, LIGHT_COLORED_TILE);
-                    } else {
-                        colorTile(row, col, DARK_COLORED_TILE);
-                    }
+            for (int col = 0; col < tiles[row].length; col++) {
+                int value = heatmap[BitBoard.square(row, col)];
+                Color color = tileColor(row, col);
+                if (value > 0) {
+                    // even a single visit stays visible
+                    float weight = 0.25f + 0.75f * value / max;
+                    color = blend(color, HIGHLIGHT_COLORED_TILE, weight);
                 }
+                colorTile(row, col, color);
             }
         }
     }
 
+    private static Color blend(Color from, Color to, float weight) {
+        return new Color(
+                Math.round(from.getRed() + (to.getRed() - from.getRed()) * weight),
+                Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * weight),
+                Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * weight));
+    }
+
+    /**
+     * the tile repaints itself, and only if the color changed
+     */
     public void colorTile(int row, int col, Color color) {
+        if (color.equals(tiles[row][col].getBackground()))
+            return;
+
         tiles[row][col].setBackground(color);
         tiles[row][col].setForeground(color);
-        repaint();
     }
 
 
@@ -261,38 +329,98 @@ public class View extends JFrame implements Observer {
 
 
     /**
-     * redraw the graphical board with
-     * the current location of each piece
+     * redraw the graphical board with the current location of each
+     * piece on the next frame; clears the highlighting. Safe to call
+     * from any thread, the board is copied right away.
      *
-     * @param board: grid to be redrawn
+     * @param board: board to be redrawn
      */
-    public void redrawBoard(Board board) {
-        Field[][] grid = board.getBoard();
+    public synchronized void redrawBoard(NarrowBoard board) {
+        pendingBlack = board.getPieces(Field.BLACK);
+        pendingWhite = board.getPieces(Field.WHITE);
+        pendingHoles = board.getHoles();
+        pendingHeatmap = null;
+        colorsPending = true;
+        frameTimer.start();
+    }
 
-        int white = 0;
-        int black = 0;
+    /**
+     * highlight the tiles by the heatmap on the next frame
+     */
+    public synchronized void redrawHeatmap(int[] heatmap) {
+        pendingHeatmap = heatmap;
+        colorsPending = true;
+        frameTimer.start();
+    }
 
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid[i].length; j++) {
+    /**
+     * draw what changed since the last frame: the pieces of the squares
+     * that differ from the shown ones, the score and the tile colors
+     */
+    private void drawFrame() {
+        long black, white, holes;
+        int[] heatmap;
+        boolean colors;
+        synchronized (this) {
+            black = pendingBlack;
+            white = pendingWhite;
+            holes = pendingHoles;
+            heatmap = pendingHeatmap;
+            colors = colorsPending;
+            colorsPending = false;
+        }
 
-                if (grid[i][j] == Field.WHITE)  {
-                    white++;
-                } else if (grid[i][j] == Field.BLACK) {
-                    black++;
-                }
+        long changed = (black ^ shownBlack) | (white ^ shownWhite) | (holes ^ shownHoles);
+        while (changed != 0) {
+            int square = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            long bit = 1L << square;
+
+            blackCount += (int)((black & bit) >>> square) - (int)((shownBlack & bit) >>> square);
+            whiteCount += (int)((white & bit) >>> square) - (int)((shownWhite & bit) >>> square);
+
+            Field field = null;
+            if ((black & bit) != 0)
+                field = Field.BLACK;
+            else if ((white & bit) != 0)
+                field = Field.WHITE;
+            else if ((holes & bit) != 0)
+                field = Field.HOLE;
+            displayPiece(BitBoard.getX(square), BitBoard.getY(square), field);
+        }
 
-                displayPiece(i, j, grid[i][j]);
-            }
+        if (black != shownBlack || white != shownWhite) {
+            whiteScore.setText("White: " + whiteCount);
+            blackScore.setText("Black: " + blackCount);
         }
+        shownBlack = black;
+        shownWhite = white;
+        shownHoles = holes;
+
+        if (colors) {
+            if (heatmap != null)
+                displayHeatmap(heatmap);
+            else
+                resetBoardColors();
+        }
+    }
 
-        // Update score board
-        whiteScore.setText("White: " + white);
-        blackScore.setText("Black: " + black);
 
-        repaint();
+    /**
+     * show how far the AI search got,
+     * called on the search thread
+     */
+    @Override
+    public void searchProgress(final int depth, final Position bestMove, final int nodes) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                searchField.setText("Depth " + depth + ", best move " + bestMove.x + ","
+                        + bestMove.y + ", " + nodes + " nodes");
+            }
+        });
     }
 
-
     /**
      * display winner and disable board
      */
@@ -314,18 +442,11 @@ public class View extends JFrame implements Observer {
         if (arg instanceof String) {
             displayWinner((String)arg);
 
-        } else if (arg instanceof Board) {
-            Board board = (Board)arg;
-            resetBoardColors();
-            redrawBoard(board);
-        } else if (arg instanceof int[][]) {
-
-            resetBoardColors();
-
-            int[][] highlightCells = (int[][])arg;
-            for (int[] cell : highlightCells) {
-                colorTile(cell[0], cell[1], HIGHLIGHT_COLORED_TILE);
-            }
+        } else if (arg instanceof NarrowBoard) {
+            // the view shows the 8 by 8 board of Othello
+            redrawBoard((NarrowBoard)arg);
+        } else if (arg instanceof int[]) {
+            redrawHeatmap((int[])arg);
         }
     }
 
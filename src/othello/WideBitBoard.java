@@ -0,0 +1,304 @@
+package othello;
+
+/**
+ * WideBitBoard: shift based move generation for boards up to 16 by 16
+ *
+ * The same idea as BitBoard with more than one word per mask: square
+ * (x, y) is bit x * 16 + y of a mask of WORDS longs, one row of 16
+ * squares per 16 bits. Squares outside of a smaller board are holes.
+ *
+ * The masks are arrays, so the operations take the arrays to write to
+ * as arguments; with a few scratch arrays kept by the caller nothing
+ * is allocated.
+ */
+public final class WideBitBoard {
+
+    public static final int SIZE = 16;
+    public static final int SQUARES = SIZE * SIZE;
+    public static final int WORDS = SQUARES / 64;
+
+    private static final long NOT_FIRST_COLUMN = 0xFFFEFFFEFFFEFFFEL;
+    private static final long NOT_LAST_COLUMN = 0x7FFF7FFF7FFF7FFFL;
+
+    // same directions as BitBoard
+    private static final int[] SHIFTS = {1, -1, 16, -16, 17, 15, -15, -17};
+    private static final long[] MASKS = {NOT_FIRST_COLUMN, NOT_LAST_COLUMN, -1L, -1L,
+            NOT_FIRST_COLUMN, NOT_LAST_COLUMN, NOT_FIRST_COLUMN, NOT_LAST_COLUMN};
+    private static final int[] DX = {0, 0, 1, -1, 1, 1, -1, -1};
+    private static final int[] DY = {1, -1, 0, 0, 1, -1, 1, -1};
+
+    // the 4 lines through a square as pairs of opposite directions
+    private static final int[][] LINES = {{0, 1}, {2, 3}, {4, 7}, {5, 6}};
+
+    // scratch arrays that stable needs
+    public static final int STABLE_SCRATCH = 11;
+
+    private WideBitBoard() {}
+
+    public static int square(int x, int y) {
+        return x * SIZE + y;
+    }
+
+    public static int getX(int square) {
+        return square >>> 4;
+    }
+
+    public static int getY(int square) {
+        return square & 15;
+    }
+
+    public static boolean get(long[] mask, int square) {
+        return ((mask[square >>> 6] >>> square) & 1) != 0;
+    }
+
+    public static void set(long[] mask, int square) {
+        mask[square >>> 6] |= 1L << square;
+    }
+
+    public static void clear(long[] mask, int square) {
+        mask[square >>> 6] &= ~(1L << square);
+    }
+
+    public static int bitCount(long[] mask) {
+        int count = 0;
+        for (long word : mask)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * mask of every square that is not part of a width by height board
+     */
+    public static void offBoardMask(int width, int height, long[] mask) {
+        for (int i = 0; i < WORDS; i++)
+            mask[i] = -1L;
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                clear(mask, square(x, y));
+    }
+
+    /**
+     * move the given mask one step into direction dir, dropping anything
+     * that would wrap around a row; in and out may be the same array
+     */
+    private static void shift(long[] in, int dir, long[] out) {
+        int s = SHIFTS[dir];
+        long mask = MASKS[dir];
+
+        if (s > 0) {
+            for (int i = WORDS - 1; i > 0; i--)
+                out[i] = ((in[i] << s) | (in[i - 1] >>> (64 - s))) & mask;
+            out[0] = (in[0] << s) & mask;
+        } else {
+            s = -s;
+            for (int i = 0; i < WORDS - 1; i++)
+                out[i] = ((in[i] >>> s) | (in[i + 1] << (64 - s))) & mask;
+            out[WORDS - 1] = (in[WORDS - 1] >>> s) & mask;
+        }
+    }
+
+    /**
+     * all empty squares that flank at least one opponent line
+     * ending in one of own pieces
+     *
+     * @param line, next: scratch arrays
+     */
+    public static void moves(long[] own, long[] opp, long[] empty, long[] moves,
+                             long[] line, long[] next) {
+        for (int i = 0; i < WORDS; i++)
+            moves[i] = 0;
+
+        for (int dir = 0; dir < 8; dir++) {
+            shift(own, dir, line);
+            long any = 0;
+            for (int i = 0; i < WORDS; i++) {
+                line[i] &= opp[i];
+                any |= line[i];
+            }
+            if (any == 0)
+                continue;
+
+            // extend the opponent lines until they stop growing
+            while (true) {
+                shift(line, dir, next);
+                long added = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    long grown = next[i] & opp[i] & ~line[i];
+                    line[i] |= grown;
+                    added |= grown;
+                }
+                if (added == 0)
+                    break;
+            }
+
+            for (int i = 0; i < WORDS; i++)
+                moves[i] |= next[i] & empty[i];
+        }
+    }
+
+    /**
+     * squares next to at least one square of mask
+     *
+     * @param scratch: scratch array
+     */
+    public static void adjacent(long[] mask, long[] adjacent, long[] scratch) {
+        for (int i = 0; i < WORDS; i++)
+            adjacent[i] = 0;
+
+        for (int dir = 0; dir < 8; dir++) {
+            shift(mask, dir, scratch);
+            for (int i = 0; i < WORDS; i++)
+                adjacent[i] |= scratch[i];
+        }
+    }
+
+    /**
+     * pieces of either colour that can never be flipped, grown from the
+     * walls in the same way as BitBoard.stable
+     *
+     * @param scratch: STABLE_SCRATCH arrays of WORDS longs
+     */
+    public static void stable(long[] black, long[] white, long[] holes, long[] stable,
+                              long[][] scratch) {
+        long[] pieces = scratch[0];
+        long[] empty = scratch[1];
+        long[] stableBlack = scratch[2];
+        long[] stableWhite = scratch[3];
+        long[] next = scratch[4];
+        long[] line = scratch[5];
+        long[] step = scratch[6];
+        // scratch[7 + l] holds the squares that are safe on line l
+
+        for (int i = 0; i < WORDS; i++) {
+            pieces[i] = black[i] | white[i];
+            empty[i] = ~(pieces[i] | holes[i]);
+            stable[i] = 0;
+        }
+
+        for (int l = 0; l < LINES.length; l++)
+            safe(pieces, empty, holes, LINES[l][0], LINES[l][1], scratch[7 + l], line, next, step);
+
+        while (true) {
+            for (int i = 0; i < WORDS; i++) {
+                stableBlack[i] = stable[i] & black[i];
+                stableWhite[i] = stable[i] & white[i];
+                next[i] = pieces[i];
+            }
+
+            for (int l = 0; l < LINES.length; l++) {
+                System.arraycopy(scratch[7 + l], 0, line, 0, WORDS);
+                neighbours(stableBlack, black, LINES[l][0], LINES[l][1], line, step);
+                neighbours(stableWhite, white, LINES[l][0], LINES[l][1], line, step);
+                for (int i = 0; i < WORDS; i++)
+                    next[i] &= line[i];
+            }
+
+            boolean changed = false;
+            for (int i = 0; i < WORDS; i++) {
+                changed |= next[i] != stable[i];
+                stable[i] = next[i];
+            }
+            if (!changed)
+                return;
+        }
+    }
+
+    /**
+     * squares that can't be outflanked along the line of directions dir
+     * and back: next to a wall, or in a segment of the line without
+     * empty squares
+     */
+    private static void safe(long[] pieces, long[] empty, long[] holes, int dir, int back,
+                             long[] safe, long[] open, long[] openBack, long[] step) {
+        // next to a hole or to the side of the grid
+        shift(holes, dir, safe);
+        shift(holes, back, step);
+        for (int i = 0; i < WORDS; i++) {
+            safe[i] |= step[i];
+            open[i] = -1L;
+        }
+        shift(open, dir, step);
+        for (int i = 0; i < WORDS; i++)
+            safe[i] |= ~step[i];
+        shift(open, back, step);
+        for (int i = 0; i < WORDS; i++)
+            safe[i] |= ~step[i];
+
+        // squares that an empty square reaches through pieces
+        fill(empty, pieces, dir, open, step);
+        fill(empty, pieces, back, openBack, step);
+        for (int i = 0; i < WORDS; i++)
+            safe[i] |= ~(open[i] | openBack[i]);
+    }
+
+    /**
+     * adds the pieces of colour next to one of stable on the line of
+     * dir and back to line
+     */
+    private static void neighbours(long[] stable, long[] colour, int dir, int back,
+                                   long[] line, long[] step) {
+        shift(stable, dir, step);
+        for (int i = 0; i < WORDS; i++)
+            line[i] |= step[i] & colour[i];
+        shift(stable, back, step);
+        for (int i = 0; i < WORDS; i++)
+            line[i] |= step[i] & colour[i];
+    }
+
+    /**
+     * gen plus every square reached from it by steps in direction dir
+     * through squares of pro
+     */
+    private static void fill(long[] gen, long[] pro, int dir, long[] fill, long[] step) {
+        System.arraycopy(gen, 0, fill, 0, WORDS);
+        while (true) {
+            shift(fill, dir, step);
+            long added = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long grown = step[i] & pro[i] & ~fill[i];
+                fill[i] |= grown;
+                added |= grown;
+            }
+            if (added == 0)
+                return;
+        }
+    }
+
+    /**
+     * opponent pieces that are flipped when own plays on the given square
+     *
+     * @return false if nothing is flipped
+     */
+    public static boolean flips(long[] own, long[] opp, int square, long[] flips) {
+        for (int i = 0; i < WORDS; i++)
+            flips[i] = 0;
+
+        boolean flipped = false;
+        int startX = getX(square);
+        int startY = getY(square);
+
+        for (int dir = 0; dir < 8; dir++) {
+            int x = startX + DX[dir];
+            int y = startY + DY[dir];
+            int length = 0;
+            while (onGrid(x, y) && get(opp, square(x, y))) {
+                x += DX[dir];
+                y += DY[dir];
+                length++;
+            }
+
+            if (length == 0 || !onGrid(x, y) || !get(own, square(x, y)))
+                continue;
+
+            flipped = true;
+            for (int step = 1; step <= length; step++)
+                set(flips, square(startX + step * DX[dir], startY + step * DY[dir]));
+        }
+
+        return flipped;
+    }
+
+    private static boolean onGrid(int x, int y) {
+        return x >= 0 && y >= 0 && x < SIZE && y < SIZE;
+    }
+}
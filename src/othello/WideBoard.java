@@ -0,0 +1,363 @@
+package othello;
+
+/**
+ * WideBoard: a board larger than 8 by 8, up to 16 by 16
+ *
+ * The squares are kept as WideBitBoard masks. There are no 64-bit masks
+ * like those of a NarrowBoard, so moves are played with play and taken
+ * back with takeBack, which keep the flipped pieces on a stack of their
+ * own. The terms of HeuristicStability are counted here as well, on the
+ * scratch masks of the board.
+ */
+public class WideBoard extends Board {
+
+    private static final int WORDS = WideBitBoard.WORDS;
+
+    private final long[] black = new long[WORDS];
+    private final long[] white = new long[WORDS];
+    private final long[] holes = new long[WORDS];
+
+    private long hash;
+
+    private int[] squareWeights;
+    private int blackWeight;
+    private int whiteWeight;
+    private final long[] corners = new long[WORDS];
+
+    // flipped pieces and move of every played move, for takeBack
+    private static final int UNDO_WHITE = 1 << 16;
+    private long[][] undoFlips;
+    private int[] undoMoves;
+    private int undoCount;
+
+    // scratch masks, a board is only used by one thread at a time
+    private final long[] empty = new long[WORDS];
+    private final long[] moves = new long[WORDS];
+    private final long[] line = new long[WORDS];
+    private final long[] next = new long[WORDS];
+    private final long[] around = new long[WORDS];
+    private final long[][] stableScratch = new long[WideBitBoard.STABLE_SCRATCH][WORDS];
+
+    public WideBoard(int width, int height) {
+        super(width, height, WideBitBoard.SIZE);
+        WideBitBoard.offBoardMask(width, height, holes);
+        for (int square = 0; square < WideBitBoard.SQUARES; square++)
+            if (WideBitBoard.get(holes, square))
+                hash ^= Zobrist.HOLE[square];
+        updateLayout();
+        undoFlips = new long[WideBitBoard.SQUARES][WORDS];
+        undoMoves = new int[WideBitBoard.SQUARES];
+        hardCodedInitialBoard();
+    }
+
+    /**
+     * copy constructor, including the moves that can be taken back
+     */
+    public WideBoard(WideBoard other) {
+        super(other);
+        System.arraycopy(other.black, 0, black, 0, WORDS);
+        System.arraycopy(other.white, 0, white, 0, WORDS);
+        System.arraycopy(other.holes, 0, holes, 0, WORDS);
+        hash = other.hash;
+        squareWeights = other.squareWeights;
+        blackWeight = other.blackWeight;
+        whiteWeight = other.whiteWeight;
+        System.arraycopy(other.corners, 0, corners, 0, WORDS);
+        undoFlips = new long[WideBitBoard.SQUARES][WORDS];
+        for (int i = 0; i < other.undoCount; i++)
+            System.arraycopy(other.undoFlips[i], 0, undoFlips[i], 0, WORDS);
+        undoMoves = other.undoMoves.clone();
+        undoCount = other.undoCount;
+    }
+
+    @Override
+    public Board copy() {
+        return new WideBoard(this);
+    }
+
+    @Override
+    protected void place(int x, int y, Field f) {
+        int square = WideBitBoard.square(x, y);
+
+        Field old = get(x, y);
+        hash ^= Zobrist.key(old, square) ^ Zobrist.key(f, square);
+        addWeight(old, -squareWeights[square]);
+        addWeight(f, squareWeights[square]);
+
+        WideBitBoard.clear(black, square);
+        WideBitBoard.clear(white, square);
+        WideBitBoard.clear(holes, square);
+
+        if (f == Field.BLACK)
+            WideBitBoard.set(black, square);
+        else if (f == Field.WHITE)
+            WideBitBoard.set(white, square);
+        else if (f == Field.HOLE)
+            WideBitBoard.set(holes, square);
+    }
+
+    @Override
+    public Field get(int x, int y) {
+        int square = WideBitBoard.square(x, y);
+
+        if (WideBitBoard.get(black, square))
+            return Field.BLACK;
+        else if (WideBitBoard.get(white, square))
+            return Field.WHITE;
+        else if (WideBitBoard.get(holes, square))
+            return Field.HOLE;
+
+        return null;
+    }
+
+    @Override
+    public boolean isWide() {
+        return true;
+    }
+
+    @Override
+    public int square(int x, int y) {
+        return WideBitBoard.square(x, y);
+    }
+
+    @Override
+    public int getX(int square) {
+        return WideBitBoard.getX(square);
+    }
+
+    @Override
+    public int getY(int square) {
+        return WideBitBoard.getY(square);
+    }
+
+    @Override
+    public int getSquares() {
+        return WideBitBoard.SQUARES;
+    }
+
+    @Override
+    public int generateMoves(Field player, int[] squares) {
+        findMoves(player);
+
+        int count = 0;
+        for (int i = 0; i < WORDS; i++) {
+            long word = moves[i];
+            while (word != 0) {
+                squares[count++] = i * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public boolean hasMoves(Field player) {
+        findMoves(player);
+        for (int i = 0; i < WORDS; i++)
+            if (moves[i] != 0)
+                return true;
+        return false;
+    }
+
+    @Override
+    public int countMoves(Field player) {
+        findMoves(player);
+        return WideBitBoard.bitCount(moves);
+    }
+
+    @Override
+    public boolean isLegalMove(Field player, int square) {
+        if (square < 0 || square >= WideBitBoard.SQUARES || !isEmpty(square))
+            return false;
+        return WideBitBoard.flips(own(player), opp(player), square, line);
+    }
+
+    @Override
+    public int countEmpty() {
+        return WideBitBoard.SQUARES - WideBitBoard.bitCount(black)
+                - WideBitBoard.bitCount(white) - WideBitBoard.bitCount(holes);
+    }
+
+    @Override
+    public int countPieces(Field player) {
+        return WideBitBoard.bitCount(own(player));
+    }
+
+    @Override
+    public int countCorners(Field player) {
+        long[] own = own(player);
+        int count = 0;
+        for (int i = 0; i < WORDS; i++)
+            count += Long.bitCount(own[i] & corners[i]);
+        return count;
+    }
+
+    @Override
+    protected void updateLayout() {
+        squareWeights = SquareWeights.forBoard(this);
+
+        for (int i = 0; i < WORDS; i++)
+            corners[i] = 0;
+        layoutKey = 0;
+        blackWeight = 0;
+        whiteWeight = 0;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int square = WideBitBoard.square(x, y);
+                Field tile = get(x, y);
+                if (tile == Field.HOLE)
+                    layoutKey ^= Zobrist.HOLE[square];
+                else if (SquareWeights.isCorner(this, x, y))
+                    WideBitBoard.set(corners, square);
+                addWeight(tile, squareWeights[square]);
+            }
+        }
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int getPositionWeight(Field player) {
+        return (player == Field.BLACK) ? blackWeight : whiteWeight;
+    }
+
+    /**
+     * pieces of player next to an empty square
+     */
+    public int countFrontier(Field player) {
+        setEmpty();
+        WideBitBoard.adjacent(empty, around, line);
+        return countAnd(own(player), around);
+    }
+
+    /**
+     * empty squares next to a piece of player
+     */
+    public int countEmptyAround(Field player) {
+        setEmpty();
+        WideBitBoard.adjacent(own(player), around, line);
+        return countAnd(empty, around);
+    }
+
+    /**
+     * stable pieces of player minus those of the opponent,
+     * see WideBitBoard.stable
+     */
+    public int countStableDifference(Field player) {
+        WideBitBoard.stable(black, white, holes, around, stableScratch);
+        return countAnd(own(player), around) - countAnd(opp(player), around);
+    }
+
+    /**
+     * place a piece for player on square and flip what it outflanks
+     *
+     * @return false, without changing anything, if the move is not legal
+     */
+    public boolean play(Field player, int square) {
+        long[] flips = undoFlips[undoCount];
+        if (!isEmpty(square) || !WideBitBoard.flips(own(player), opp(player), square, flips))
+            return false;
+
+        undoMoves[undoCount] = square | (player == Field.WHITE ? UNDO_WHITE : 0);
+        undoCount++;
+        update(player, square, flips, 1);
+        return true;
+    }
+
+    /**
+     * take back the last move made with play
+     *
+     * @return the player who made it
+     */
+    public Field takeBack() {
+        undoCount--;
+        int square = undoMoves[undoCount] & 0xFFFF;
+        Field player = (undoMoves[undoCount] & UNDO_WHITE) != 0 ? Field.WHITE : Field.BLACK;
+        update(player, square, undoFlips[undoCount], -1);
+        return player;
+    }
+
+    /**
+     * place (sign 1) or remove (sign -1) a piece of player and flip
+     * the given pieces, keeping hash and weights up to date
+     */
+    private void update(Field player, int square, long[] flips, int sign) {
+        long[] own = own(player);
+        long[] opp = opp(player);
+
+        long hashChange = Zobrist.key(player, square);
+        int flipped = 0;
+        for (int i = 0; i < WORDS; i++) {
+            if (sign > 0) {
+                own[i] |= flips[i];
+                opp[i] &= ~flips[i];
+            } else {
+                own[i] &= ~flips[i];
+                opp[i] |= flips[i];
+            }
+
+            long word = flips[i];
+            while (word != 0) {
+                int s = i * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                hashChange ^= Zobrist.BLACK[s] ^ Zobrist.WHITE[s];
+                flipped += squareWeights[s];
+            }
+        }
+
+        if (sign > 0)
+            WideBitBoard.set(own, square);
+        else
+            WideBitBoard.clear(own, square);
+
+        hash ^= hashChange;
+        if (player == Field.BLACK) {
+            blackWeight += sign * (squareWeights[square] + flipped);
+            whiteWeight -= sign * flipped;
+        } else {
+            whiteWeight += sign * (squareWeights[square] + flipped);
+            blackWeight -= sign * flipped;
+        }
+    }
+
+    private void findMoves(Field player) {
+        setEmpty();
+        WideBitBoard.moves(own(player), opp(player), empty, moves, line, next);
+    }
+
+    private void setEmpty() {
+        for (int i = 0; i < WORDS; i++)
+            empty[i] = ~(black[i] | white[i] | holes[i]);
+    }
+
+    private static int countAnd(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < WORDS; i++)
+            count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+
+    private boolean isEmpty(int square) {
+        return !WideBitBoard.get(black, square) && !WideBitBoard.get(white, square)
+                && !WideBitBoard.get(holes, square);
+    }
+
+    private long[] own(Field player) {
+        return (player == Field.BLACK) ? black : white;
+    }
+
+    private long[] opp(Field player) {
+        return (player == Field.BLACK) ? white : black;
+    }
+
+    private void addWeight(Field player, int weight) {
+        if (player == Field.BLACK)
+            blackWeight += weight;
+        else if (player == Field.WHITE)
+            whiteWeight += weight;
+    }
+}
@@ -0,0 +1,71 @@
+package othello;
+
+import java.util.Random;
+
+/**
+ * Zobrist: random keys used to hash a position
+ *
+ * The hash of a position is the xor of the keys of all occupied squares
+ * and holes, plus SIDE when white is to move. Since xor is its own
+ * inverse the hash can be updated incrementally whenever a square changes.
+ *
+ * There are keys for every square of the wide layout; the ones of the
+ * 8 by 8 layout are drawn first, so hashes of small boards don't depend
+ * on it.
+ */
+public final class Zobrist {
+
+    // fixed seed so that hashes are stable between runs
+    private static final long SEED = 0x0DDBA11L;
+
+    public static final long[] BLACK = new long[WideBitBoard.SQUARES];
+    public static final long[] WHITE = new long[WideBitBoard.SQUARES];
+    public static final long[] HOLE = new long[WideBitBoard.SQUARES];
+    public static final long SIDE;
+
+    static {
+        Random random = new Random(SEED);
+        for (int square = 0; square < BitBoard.SQUARES; square++) {
+            BLACK[square] = random.nextLong();
+            WHITE[square] = random.nextLong();
+            HOLE[square] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+
+        for (int square = BitBoard.SQUARES; square < WideBitBoard.SQUARES; square++) {
+            BLACK[square] = random.nextLong();
+            WHITE[square] = random.nextLong();
+            HOLE[square] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {}
+
+    public static long key(Field field, int square) {
+        if (field == Field.BLACK)
+            return BLACK[square];
+        else if (field == Field.WHITE)
+            return WHITE[square];
+        else if (field == Field.HOLE)
+            return HOLE[square];
+
+        return 0;
+    }
+
+    /**
+     * hash every square of the given masks from scratch
+     */
+    public static long hash(long black, long white, long holes) {
+        long hash = 0;
+        for (int square = 0; square < BitBoard.SQUARES; square++) {
+            long bit = 1L << square;
+            if ((black & bit) != 0)
+                hash ^= BLACK[square];
+            else if ((white & bit) != 0)
+                hash ^= WHITE[square];
+            else if ((holes & bit) != 0)
+                hash ^= HOLE[square];
+        }
+        return hash;
+    }
+}
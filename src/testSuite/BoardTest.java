@@ -3,6 +3,7 @@ package testSuite;
 import org.junit.After;
 import org.junit.Before;
 import othello.Board;
+import othello.NarrowBoard;
 
 public class BoardTest {
 
@@ -13,7 +14,7 @@ public class BoardTest {
 
     @Before
     public void setUp() throws Exception {
-        board = new Board(BOARD_WIDTH, BOARD_HEIGHT);
+        board = new NarrowBoard(BOARD_WIDTH, BOARD_HEIGHT);
     }
 //
 //    @Test
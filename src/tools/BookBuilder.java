@@ -0,0 +1,90 @@
+package tools;
+
+import AI.HeuristicUtility;
+import AI.MiniMaxAlphaBetaAI;
+import AI.OpeningBook;
+import othello.BitBoard;
+import othello.Field;
+import othello.GameState;
+import othello.NarrowBoard;
+import othello.Position;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BookBuilder: generate an opening book file
+ *
+ * Visits every position up to the given number of plies from the
+ * standard starting position, searches each distinct position (up to
+ * symmetry) with MiniMaxAlphaBetaAI and writes the moves found.
+ *
+ * usage: BookBuilder [file] [plies] [milliseconds per position]
+ */
+public class BookBuilder {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 8;
+
+    private static final String DEFAULT_FILE = "opening.book";
+    private static final int DEFAULT_PLIES = 6;
+    private static final int DEFAULT_MILLISECONDS = 200;
+
+    private final Duration timePerPosition;
+    private final MiniMaxAlphaBetaAI ai;
+    private final Map<Long, Integer> moves;
+
+    public BookBuilder(Duration timePerPosition) {
+        this.timePerPosition = timePerPosition;
+        ai = new MiniMaxAlphaBetaAI();
+        ai.setStrategy(new HeuristicUtility());
+        ai.setEndgameEmpties(0);
+        moves = new HashMap<Long, Integer>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length > 0 ? args[0] : DEFAULT_FILE);
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+        int milliseconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MILLISECONDS;
+
+        BookBuilder builder = new BookBuilder(Duration.ofMillis(milliseconds));
+        builder.visit(new GameState(WIDTH, HEIGHT), plies);
+
+        OpeningBook.write(file, builder.moves);
+        System.out.println("Wrote " + builder.moves.size() + " positions to " + file);
+    }
+
+    /**
+     * add the position and everything reachable within plies moves
+     */
+    private void visit(GameState game, int plies) throws Exception {
+        if (!game.isRunning() || plies == 0)
+            return;
+
+        NarrowBoard board = (NarrowBoard)game.getBoard();
+        Field player = game.getCurrentPlayer();
+        long black = board.getPieces(Field.BLACK);
+        long white = board.getPieces(Field.WHITE);
+        long holes = board.getHoles();
+
+        int symmetry = OpeningBook.canonicalSymmetry(black, white, holes, player);
+        long key = OpeningBook.key(black, white, holes, player, symmetry);
+        if (moves.containsKey(key))
+            return;
+
+        Position best = ai.selectMove(game, timePerPosition);
+        int square = BitBoard.square(best.x, best.y);
+        moves.put(key, Long.numberOfTrailingZeros(BitBoard.transform(1L << square, symmetry)));
+
+        int[] nextMoves = new int[BitBoard.SQUARES];
+        int nrOfMoves = game.generateMoves(nextMoves);
+        for (int i = 0; i < nrOfMoves; i++) {
+            game.makeMove(nextMoves[i]);
+            visit(game, plies - 1);
+            game.undoMove();
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package tools;
+
+import AI.AI;
+import AI.HeuristicPattern;
+import AI.HeuristicPieceCounter;
+import AI.HeuristicStability;
+import AI.HeuristicStrategy;
+import AI.HeuristicUtility;
+import AI.MiniMaxAI;
+import AI.MiniMaxAlphaBetaAI;
+import AI.ParallelAlphaBetaAI;
+import AI.TranspositionTable;
+import othello.GameState;
+import othello.Position;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * EngineBenchmark: throughput and allocation of the engine hot paths
+ *
+ * Every benchmark runs over a fixed set of midgame and endgame positions
+ * (reached by seeded random play, so they are the same on every run).
+ * After a warmup, each benchmark is measured for a number of timed
+ * iterations; one operation is one call on one position. Reported are
+ * operations per second with the standard deviation over the iterations
+ * and the bytes allocated per operation by the benchmark thread.
+ *
+ * Results can be written to a file and compared against an earlier one;
+ * the exit code is 1 if any benchmark lost more than the tolerance of its
+ * throughput, so the tool can gate engine changes in a script. Separate
+ * JVM runs differ by 10-20% on a busy machine, so the default tolerance
+ * is loose.
+ *
+ * Last, the parallel search is timed to a fixed depth on the midgame
+ * positions with 1, 2, ... threads, up to the number of cores or the
+ * given count. Printed are the time, the speedup over one thread and
+ * the nodes each thread searched; these are not compared to a baseline.
+ *
+ * usage: EngineBenchmark [results file] [baseline file] [tolerance percent] [threads]
+ */
+public class EngineBenchmark {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 8;
+
+    private static final int POSITIONS = 8;
+    private static final int MIDGAME_PLIES = 20;
+    private static final int ENDGAME_PLIES = 50;
+    private static final long SEED = 20150421L;
+
+    private static final int WARMUP_MILLISECONDS = 1000;
+    private static final int ITERATION_MILLISECONDS = 1000;
+    private static final int ITERATIONS = 5;
+
+    private static final int DEFAULT_TOLERANCE_PERCENT = 25;
+
+    // the threads share what they found through the table,
+    // so the parallel search gets one of a realistic size
+    private static final int SPEEDUP_DEPTH = 6;
+    private static final int SPEEDUP_TABLE_SIZE = 1 << 18;
+
+    // searches start from an empty table, small enough to clear per call
+    private static final int BENCHMARK_TABLE_SIZE = 1 << 12;
+
+    // results are summed here so the JIT can't drop the benchmarked calls
+    private static volatile long sink;
+
+    private final ThreadMXBean threads;
+    private final Map<String, double[]> results;
+
+    /**
+     * one benchmarked operation on a single position
+     */
+    private static abstract class Benchmark {
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        abstract long run(GameState game) throws Exception;
+    }
+
+    public EngineBenchmark() {
+        threads = ManagementFactory.getThreadMXBean();
+        results = new LinkedHashMap<String, double[]>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        EngineBenchmark benchmark = new EngineBenchmark();
+        benchmark.runAll();
+
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        benchmark.speedup(threads);
+
+        if (args.length > 0)
+            benchmark.write(Paths.get(args[0]));
+
+        int tolerance = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TOLERANCE_PERCENT;
+        if (args.length > 1 && !benchmark.compare(Paths.get(args[1]), tolerance / 100.0))
+            System.exit(1);
+    }
+
+    public void runAll() throws Exception {
+        GameState[] midgame = positions(MIDGAME_PLIES);
+        GameState[] endgame = positions(ENDGAME_PLIES);
+
+        System.out.printf("%-48s %16s %12s%n", "benchmark", "ops/s", "bytes/op");
+        for (Benchmark benchmark : benchmarks()) {
+            measure(benchmark, "midgame", midgame);
+            measure(benchmark, "endgame", endgame);
+        }
+    }
+
+    private List<Benchmark> benchmarks() {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        benchmarks.add(new Benchmark("getPossibleMoves") {
+            @Override
+            long run(GameState game) {
+                return game.getPossibleMoves(game.getCurrentPlayer()).size();
+            }
+        });
+
+        // move changes the game, so it is played on a fresh copy
+        benchmarks.add(new Benchmark("copy+move") {
+            @Override
+            long run(GameState game) throws Exception {
+                GameState copy = new GameState(game);
+                return copy.move(copy.getPossibleMoves(copy.getCurrentPlayer()).get(0));
+            }
+        });
+
+        benchmarks.add(new Benchmark("makeMove+undoMove") {
+            private final int[] moves = new int[WIDTH * HEIGHT];
+
+            @Override
+            long run(GameState game) {
+                int nrOfMoves = game.generateMoves(moves);
+                long result = 0;
+                for (int i = 0; i < nrOfMoves; i++) {
+                    result += game.makeMove(moves[i]);
+                    game.undoMove();
+                }
+                return result;
+            }
+        });
+
+        benchmarks.add(evaluation("HeuristicPieceCounter.evaluateBoard", new HeuristicPieceCounter()));
+        benchmarks.add(evaluation("HeuristicUtility.evaluateBoard", new HeuristicUtility()));
+        benchmarks.add(evaluation("HeuristicPattern.evaluateBoard", new HeuristicPattern()));
+        benchmarks.add(evaluation("HeuristicStability.evaluateBoard", new HeuristicStability()));
+
+        benchmarks.add(search("MiniMaxAI.selectMove", new MiniMaxAI(), null));
+        TranspositionTable table = new TranspositionTable(BENCHMARK_TABLE_SIZE,
+                TranspositionTable.Replacement.DEPTH_PREFERRED);
+        benchmarks.add(search("MiniMaxAlphaBetaAI.selectMove", new MiniMaxAlphaBetaAI(table), table));
+
+        return benchmarks;
+    }
+
+    private Benchmark evaluation(String name, final HeuristicStrategy strategy) {
+        return new Benchmark(name) {
+            @Override
+            long run(GameState game) {
+                strategy.setComputerAndOpponent(game.getCurrentPlayer(), game.getOpponentPlayer());
+                return strategy.evaluateBoard(game.getBoard());
+            }
+        };
+    }
+
+    private Benchmark search(String name, final AI ai, final TranspositionTable table) {
+        ai.setStrategy(new HeuristicUtility());
+        return new Benchmark(name) {
+            @Override
+            long run(GameState game) throws Exception {
+                if (table != null)
+                    table.clear();
+                Position move = ai.selectMove(game);
+                return move.x * HEIGHT + move.y;
+            }
+        };
+    }
+
+    /**
+     * warm up, then time ITERATIONS rounds over the positions
+     */
+    private void measure(Benchmark benchmark, String phase, GameState[] positions) throws Exception {
+        runFor(benchmark, positions, WARMUP_MILLISECONDS);
+
+        double[] opsPerSecond = new double[ITERATIONS];
+        long operations = 0;
+        long allocated = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long count = runFor(benchmark, positions, ITERATION_MILLISECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            allocated += allocatedBytes() - bytesBefore;
+            operations += count;
+            opsPerSecond[i] = count * 1e9 / elapsed;
+        }
+
+        double mean = 0;
+        for (double ops : opsPerSecond)
+            mean += ops / ITERATIONS;
+        double variance = 0;
+        for (double ops : opsPerSecond)
+            variance += (ops - mean) * (ops - mean) / ITERATIONS;
+
+        double bytesPerOperation = (allocatedBytes() < 0) ? Double.NaN : (double)allocated / operations;
+        String name = benchmark.name + " (" + phase + ")";
+        results.put(name, new double[] {mean, bytesPerOperation});
+
+        System.out.printf("%-48s %9.0f +- %4.1f%% %12.1f%n",
+                name, mean, 100 * Math.sqrt(variance) / mean, bytesPerOperation);
+    }
+
+    /**
+     * run over all positions until the time is up
+     *
+     * @return number of operations
+     */
+    private long runFor(Benchmark benchmark, GameState[] positions, int milliseconds) throws Exception {
+        long end = System.nanoTime() + milliseconds * 1000000L;
+        long operations = 0;
+        long result = 0;
+
+        do {
+            for (GameState game : positions)
+                result += benchmark.run(game);
+            operations += positions.length;
+        } while (System.nanoTime() < end);
+
+        sink += result;
+        return operations;
+    }
+
+    /**
+     * time the parallel search to SPEEDUP_DEPTH on every midgame
+     * position with 1 to maxThreads threads; one thread is run once
+     * before, to warm up
+     */
+    public void speedup(int maxThreads) throws Exception {
+        GameState[] midgame = positions(MIDGAME_PLIES);
+        timeToDepth(1, midgame);
+
+        System.out.printf("%n%-8s %10s %8s  %s%n", "threads", "ms", "speedup", "nodes per thread");
+        double single = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            long[] nodes = new long[threads];
+            double milliseconds = timeToDepth(threads, midgame, nodes);
+            if (threads == 1)
+                single = milliseconds;
+
+            System.out.printf("%-8d %10.1f %7.2fx  %s%n",
+                    threads, milliseconds, single / milliseconds, Arrays.toString(nodes));
+        }
+    }
+
+    private double timeToDepth(int threads, GameState[] positions) throws Exception {
+        return timeToDepth(threads, positions, new long[threads]);
+    }
+
+    /**
+     * search every position to SPEEDUP_DEPTH; every thread count gets
+     * a new engine, so they all start out from an empty table
+     *
+     * @param nodes: summed up nodes of every thread, filled in
+     * @return milliseconds for all positions
+     */
+    private double timeToDepth(int threads, GameState[] positions, long[] nodes) throws Exception {
+        ParallelAlphaBetaAI ai = new ParallelAlphaBetaAI(threads,
+                new TranspositionTable(SPEEDUP_TABLE_SIZE, TranspositionTable.Replacement.DEPTH_PREFERRED));
+        ai.setStrategy(new HeuristicUtility());
+        ai.setMaxDepth(SPEEDUP_DEPTH);
+
+        long elapsed = 0;
+        try {
+            for (GameState game : positions) {
+                long start = System.nanoTime();
+                Position move = ai.selectMove(new GameState(game));
+                elapsed += System.nanoTime() - start;
+                sink += move.x;
+
+                int[] threadNodes = ai.getNodesPerThread();
+                for (int i = 0; i < threads; i++)
+                    nodes[i] += threadNodes[i];
+            }
+        } finally {
+            ai.shutdown();
+        }
+
+        return elapsed / 1e6;
+    }
+
+    /**
+     * bytes allocated by this thread so far, -1 if the JVM can't tell
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean)threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        return -1;
+    }
+
+    /**
+     * positions after the given number of seeded random moves,
+     * replayed with a new seed if a game ends too early
+     */
+    private static GameState[] positions(int plies) throws Exception {
+        GameState[] positions = new GameState[POSITIONS];
+        Random random = new Random(SEED + plies);
+        int[] moves = new int[WIDTH * HEIGHT];
+
+        for (int i = 0; i < POSITIONS; ) {
+            GameState game = new GameState(WIDTH, HEIGHT);
+            for (int ply = 0; ply < plies && game.isRunning(); ply++)
+                game.makeMove(moves[random.nextInt(game.generateMoves(moves))]);
+
+            if (game.isRunning())
+                positions[i++] = game;
+        }
+
+        return positions;
+    }
+
+    private void write(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, double[]> result : results.entrySet())
+                out.println(result.getKey() + "\t" + result.getValue()[0] + "\t" + result.getValue()[1]);
+        }
+    }
+
+    /**
+     * print the change against a results file written earlier
+     *
+     * @return false if any benchmark got slower than the tolerance allows
+     */
+    private boolean compare(Path baselineFile, double tolerance) throws IOException {
+        boolean passed = true;
+
+        System.out.printf("%n%-48s %10s%n", "compared to " + baselineFile, "change");
+        for (String line : Files.readAllLines(baselineFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            double[] result = results.get(fields[0]);
+            if (result == null)
+                continue;
+
+            double change = result[0] / Double.parseDouble(fields[1]) - 1;
+            boolean regressed = change < -tolerance;
+            passed &= !regressed;
+
+            System.out.printf("%-48s %+9.1f%%%s%n", fields[0], 100 * change, regressed ? "  REGRESSION" : "");
+        }
+
+        return passed;
+    }
+}
@@ -0,0 +1,264 @@
+package tools;
+
+import othello.Board;
+import othello.Field;
+import othello.GameState;
+import othello.OthelloModel;
+import othello.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft: count the leaf nodes of the game tree to a fixed depth
+ *
+ * A pass counts as a ply and a finished game is a leaf, whatever depth
+ * is left. The moves of the root are split over the given number of
+ * threads, each searching on its own copy of the game with makeMove and
+ * undoMove.
+ *
+ * On the standard board the count is checked against known reference
+ * counts. With -verify it is also checked against a slow count that
+ * finds and plays moves square by square with Board.get and Board.set,
+ * without any of the bitboard code; that also covers boards with holes
+ * and other sizes.
+ *
+ * usage: Perft [depth] [threads] [-verify] [-size WxH] [x1,y1:x2,y2 (hole) ...]
+ */
+public class Perft {
+
+    private static final int DEFAULT_SIZE = 8;
+
+    private static final int DEFAULT_DEPTH = 8;
+
+    // leaf counts of the standard starting position, index is the depth
+    private static final long[] REFERENCE = {1, 4, 12, 56, 244, 1396, 8200, 55092, 390216,
+            3005288, 24571284, 212258800, 1939886636L, 18429641748L, 184042084512L};
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0},
+                                               {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    public static void main(String[] args) throws Exception {
+        int depth = DEFAULT_DEPTH;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verify = false;
+        int width = DEFAULT_SIZE;
+        int height = DEFAULT_SIZE;
+        List<Position[]> holes = new ArrayList<Position[]>();
+
+        int number = 0;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-verify")) {
+                verify = true;
+            } else if (arg.equals("-size")) {
+                String[] size = args[++i].split("x");
+                width = Integer.parseInt(size[0]);
+                height = Integer.parseInt(size[1]);
+            } else if (arg.contains(":"))
+                holes.add(parseRectangle(arg));
+            else if (number++ == 0)
+                depth = Integer.parseInt(arg);
+            else
+                threads = Integer.parseInt(arg);
+        }
+
+        OthelloModel model = new OthelloModel(width, height);
+        for (Position[] rectangle : holes)
+            model.makeHole(rectangle);
+        GameState game = model.copyState();
+
+        long start = System.nanoTime();
+        long nodes = divide(game, depth, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("perft(%d) = %d in %.3f s, %.0f nodes/s%n",
+                depth, nodes, seconds, nodes / seconds);
+
+        boolean passed = true;
+        boolean standard = holes.isEmpty() && width == DEFAULT_SIZE && height == DEFAULT_SIZE;
+        if (standard && depth < REFERENCE.length) {
+            passed = nodes == REFERENCE[depth];
+            System.out.println("reference " + REFERENCE[depth] + (passed ? ": ok" : ": MISMATCH"));
+        }
+
+        if (verify) {
+            long expected = slowPerft(game.getBoard().copy(), game.getCurrentPlayer(), depth);
+            passed &= nodes == expected;
+            System.out.println("slow count " + expected + (nodes == expected ? ": ok" : ": MISMATCH"));
+        }
+
+        if (!passed)
+            System.exit(1);
+    }
+
+    /**
+     * count the subtree of every root move on the thread pool and print them
+     *
+     * @return total count
+     */
+    public static long divide(GameState game, final int depth, int threads) throws Exception {
+        if (depth == 0 || !game.isRunning())
+            return 1;
+
+        int[] moves = new int[Board.MAX_SQUARES];
+        int nrOfMoves = game.generateMoves(moves);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> counts = new ArrayList<Future<Long>>();
+        try {
+            for (int i = 0; i < nrOfMoves; i++) {
+                final GameState copy = new GameState(game);
+                final int square = moves[i];
+                counts.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        int next = nextDepth(copy.makeMove(square), depth);
+                        return perft(copy, next, new int[next + 1][Board.MAX_SQUARES]);
+                    }
+                }));
+            }
+
+            long nodes = 0;
+            Board board = game.getBoard();
+            for (int i = 0; i < nrOfMoves; i++) {
+                long count = counts.get(i).get();
+                System.out.println(board.getX(moves[i]) + "," + board.getY(moves[i]) + ": " + count);
+                nodes += count;
+            }
+            return nodes;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * leaf count below the current position of game
+     *
+     * @param moveLists: one move buffer per remaining depth
+     */
+    public static long perft(GameState game, int depth, int[][] moveLists) {
+        if (depth == 0 || !game.isRunning())
+            return 1;
+
+        int[] moves = moveLists[depth];
+        int nrOfMoves = game.generateMoves(moves);
+
+        // every move leads to exactly one leaf
+        if (depth == 1)
+            return nrOfMoves;
+
+        long nodes = 0;
+        for (int i = 0; i < nrOfMoves; i++) {
+            int next = nextDepth(game.makeMove(moves[i]), depth);
+            nodes += perft(game, next, moveLists);
+            game.undoMove();
+        }
+
+        return nodes;
+    }
+
+    /**
+     * depth left after a move; makeMove plays the pass of the opponent
+     * right away (code 1), which uses up one more ply
+     */
+    private static int nextDepth(int code, int depth) {
+        return (code == 1 && depth > 1) ? depth - 2 : depth - 1;
+    }
+
+    /**
+     * leaf count using nothing but Board.get and Board.set
+     */
+    private static long slowPerft(Board board, Field player, int depth) {
+        if (depth == 0)
+            return 1;
+
+        Field opponent = (player == Field.BLACK) ? Field.WHITE : Field.BLACK;
+        long nodes = 0;
+        boolean moved = false;
+
+        for (int x = 0; x < board.width; x++) {
+            for (int y = 0; y < board.height; y++) {
+                if (board.get(x, y) != null || !slowPlay(board.copy(), player, x, y, false))
+                    continue;
+
+                Board next = board.copy();
+                slowPlay(next, player, x, y, true);
+                nodes += slowPerft(next, opponent, depth - 1);
+                moved = true;
+            }
+        }
+
+        if (moved)
+            return nodes;
+
+        if (!slowHasMove(board, opponent))
+            return 1;
+
+        return slowPerft(board, opponent, depth - 1);
+    }
+
+    private static boolean slowHasMove(Board board, Field player) {
+        for (int x = 0; x < board.width; x++)
+            for (int y = 0; y < board.height; y++)
+                if (board.get(x, y) == null && slowPlay(board, player, x, y, false))
+                    return true;
+
+        return false;
+    }
+
+    /**
+     * walk every direction from (x, y) and flip enclosed opponent lines
+     *
+     * @param apply: false to only check whether anything would flip
+     * @return true if at least one piece is flipped
+     */
+    private static boolean slowPlay(Board board, Field player, int x, int y, boolean apply) {
+        boolean flipped = false;
+
+        for (int[] dir : DIRECTIONS) {
+            int i = x + dir[0];
+            int j = y + dir[1];
+            int length = 0;
+            while (onBoard(board, i, j) && board.get(i, j) != null
+                    && board.get(i, j) != Field.HOLE && board.get(i, j) != player) {
+                i += dir[0];
+                j += dir[1];
+                length++;
+            }
+
+            if (length == 0 || !onBoard(board, i, j) || board.get(i, j) != player)
+                continue;
+
+            flipped = true;
+            if (!apply)
+                return true;
+
+            for (int step = 1; step <= length; step++)
+                board.set(x + step * dir[0], y + step * dir[1], player);
+        }
+
+        if (flipped)
+            board.set(x, y, player);
+
+        return flipped;
+    }
+
+    private static boolean onBoard(Board board, int x, int y) {
+        return x >= 0 && y >= 0 && x < board.width && y < board.height;
+    }
+
+    private static Position[] parseRectangle(String rectangle) {
+        String[] corners = rectangle.split(":");
+        return new Position[] {parsePosition(corners[0]), parsePosition(corners[1])};
+    }
+
+    private static Position parsePosition(String position) {
+        String[] str = position.split(",");
+        return new Position(Integer.parseInt(str[0].trim()), Integer.parseInt(str[1].trim()));
+    }
+}
@@ -0,0 +1,72 @@
+package tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PositionFile: labelled positions for tuning, written by SelfPlay
+ * and read by Tuner
+ *
+ *   int     magic ("OPS1")
+ *   record  (long own, long opp, byte result) until the end of the file
+ *
+ * own are the pieces of the player to move, opp those of the other
+ * player, and result is the final disc difference of the game for the
+ * player to move. Records are read and written one at a time, so files
+ * can be much larger than memory.
+ */
+public class PositionFile {
+
+    private static final int MAGIC = 0x4F505331; // "OPS1"
+
+    public static final int RECORD_SIZE = 17;
+
+    private PositionFile() {}
+
+    public static DataOutputStream create(Path file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        return out;
+    }
+
+    public static void write(DataOutputStream out, long own, long opp, int result) throws IOException {
+        out.writeLong(own);
+        out.writeLong(opp);
+        out.writeByte(result);
+    }
+
+    public static DataInputStream open(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a position file: " + file);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    /**
+     * read the next record into the arrays at index
+     *
+     * @return false at the end of the file
+     */
+    public static boolean read(DataInputStream in, long[] own, long[] opp, byte[] result,
+                               int index) throws IOException {
+        try {
+            own[index] = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        opp[index] = in.readLong();
+        result[index] = in.readByte();
+        return true;
+    }
+}
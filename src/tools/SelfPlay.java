@@ -0,0 +1,150 @@
+package tools;
+
+import AI.AI;
+import othello.BitBoard;
+import othello.Field;
+import othello.GameState;
+import othello.NarrowBoard;
+import othello.Position;
+
+import java.io.DataOutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * SelfPlay: generate labelled positions for Tuner
+ *
+ * Plays games of an engine against itself and writes every position of
+ * every game to a PositionFile, labelled with the final disc difference.
+ * The first plies of a game are random, and later on a few moves are
+ * random as well, so that the games cover more than the engine's own
+ * favourite lines. Every game has its own seed and a new engine, which
+ * remembers nothing of earlier games, so a run is repeatable whatever
+ * the number of threads (apart from the order of the games).
+ *
+ * usage: SelfPlay [positions file] [games] [engine] [random plies] [threads]
+ *
+ *   engine: as for Tournament, a shallow one keeps this fast
+ */
+public class SelfPlay {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 8;
+
+    private static final String DEFAULT_FILE = "positions.bin";
+    private static final int DEFAULT_GAMES = 10000;
+    private static final String DEFAULT_ENGINE = "alphabeta:utility";
+    private static final int DEFAULT_RANDOM_PLIES = 8;
+
+    // chance of a random move after the opening
+    private static final double RANDOM_MOVE_CHANCE = 0.05;
+
+    private static final long SEED = 0x5E1FL;
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final Supplier<AI> engine;
+    private final int randomPlies;
+
+    // guarded by itself
+    private final DataOutputStream out;
+    private long positions;
+
+    public SelfPlay(final Supplier<AI> engine, int randomPlies, DataOutputStream out) {
+        this.randomPlies = randomPlies;
+        this.out = out;
+        this.engine = engine;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length > 0 ? args[0] : DEFAULT_FILE);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        String engine = args.length > 2 ? args[2] : DEFAULT_ENGINE;
+        int randomPlies = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RANDOM_PLIES;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        try (DataOutputStream out = PositionFile.create(file)) {
+            SelfPlay selfPlay = new SelfPlay(Tournament.engine(engine), randomPlies, out);
+            selfPlay.play(games, threads);
+            System.out.printf("Wrote %d positions of %d games to %s in %.1f s%n",
+                    selfPlay.positions, games, file, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    public void play(int games, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        try {
+            for (int i = 0; i < games; i++) {
+                final long seed = SEED + i;
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        playGame(engine.get(), new Random(seed));
+                        return null;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                results.get(i).get();
+                if ((i + 1) % PROGRESS_INTERVAL == 0) {
+                    synchronized (out) {
+                        System.out.println((i + 1) + " games, " + positions + " positions");
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * play one game and write its positions
+     */
+    private void playGame(AI ai, Random random) throws Exception {
+        GameState game = new GameState(WIDTH, HEIGHT);
+        int[] moves = new int[BitBoard.SQUARES];
+
+        // a game has at most one position per empty square plus passes
+        long[] own = new long[2 * BitBoard.SQUARES];
+        long[] opp = new long[2 * BitBoard.SQUARES];
+        boolean[] black = new boolean[2 * BitBoard.SQUARES];
+        int count = 0;
+
+        for (int ply = 0; game.isRunning(); ply++) {
+            // WIDTH by HEIGHT fits into the 64-bit masks
+            NarrowBoard board = (NarrowBoard)game.getBoard();
+            Field player = game.getCurrentPlayer();
+            own[count] = board.getPieces(player);
+            opp[count] = board.getPieces(game.getOpponentPlayer());
+            black[count] = player == Field.BLACK;
+            count++;
+
+            if (ply < randomPlies || random.nextDouble() < RANDOM_MOVE_CHANCE) {
+                game.makeMove(moves[random.nextInt(game.generateMoves(moves))]);
+            } else {
+                Position move = ai.selectMove(game);
+                game.makeMove(BitBoard.square(move.x, move.y));
+            }
+        }
+
+        int[] score = game.getScore();
+        int result = score[0] - score[1];
+
+        synchronized (out) {
+            for (int i = 0; i < count; i++)
+                PositionFile.write(out, own[i], opp[i], black[i] ? result : -result);
+            positions += count;
+        }
+    }
+}
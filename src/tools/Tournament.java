@@ -0,0 +1,380 @@
+package tools;
+
+import AI.AI;
+import AI.HeuristicPattern;
+import AI.HeuristicPieceCounter;
+import AI.HeuristicStability;
+import AI.HeuristicStrategy;
+import AI.HeuristicUtility;
+import AI.MiniMaxAI;
+import AI.MiniMaxAlphaBetaAI;
+import AI.OpeningBook;
+import AI.ParallelAlphaBetaAI;
+import AI.PrincipalVariationAI;
+import othello.BitBoard;
+import othello.Board;
+import othello.Field;
+import othello.GameState;
+import othello.NarrowBoard;
+import othello.Position;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Tournament: headless match between two engines
+ *
+ * Games are played in pairs from the same opening, once with each
+ * engine as black, so that an unbalanced opening favours neither side.
+ * The openings are distinct (up to symmetry) positions reached by a few
+ * seeded random moves. Pairs are played in parallel, every worker thread
+ * keeps its own instance of both engines.
+ *
+ * Reports the score of the first engine with the Elo difference and its
+ * 95% confidence interval, plus time and nodes per move of both engines.
+ * An engine that returns an illegal move loses the game.
+ *
+ * usage: Tournament [games] [engine a] [engine b] [ms per move] [opening plies] [threads] [size]
+ *
+ *   engine: minimax, alphabeta, pvs, mtdf or parallel<N>, optionally followed by
+ *           :utility (default), :pieces, :pattern or :stability for the heuristic;
+ *           :pattern reads its weights from HeuristicPattern.DEFAULT_FILE;
+ *           parallel4 is alpha-beta on 4 threads per game, so keep
+ *           threads times N at most the number of cores
+ *   ms per move: 0 searches every move to the engine's fixed depth
+ *   size: width x height of the board, like 10x10; 8x8 by default.
+ *         :pattern only plays on 8x8
+ */
+public class Tournament {
+
+    private static final int DEFAULT_SIZE = 8;
+
+    private static final int DEFAULT_GAMES = 1000;
+    private static final String DEFAULT_ENGINE_A = "alphabeta:utility";
+    private static final String DEFAULT_ENGINE_B = "alphabeta:pieces";
+    private static final int DEFAULT_OPENING_PLIES = 6;
+
+    private static final long SEED = 0x0DDBA11L;
+    private static final int PROGRESS_INTERVAL = 100;
+
+    // 95% confidence
+    private static final double Z = 1.96;
+
+    private final String nameA;
+    private final String nameB;
+    private final Supplier<AI> engineA;
+    private final Supplier<AI> engineB;
+    private final Duration timePerMove;
+    private final int width;
+    private final int height;
+
+    // one pair of engines per worker thread
+    private final ThreadLocal<AI[]> engines;
+
+    // totals over all games, guarded by this
+    private int wins, draws, losses;
+    private final long[] moves = new long[2];
+    private final long[] nanos = new long[2];
+    private final long[] nodes = new long[2];
+
+    public Tournament(String nameA, Supplier<AI> engineA, String nameB, Supplier<AI> engineB,
+                      Duration timePerMove) {
+        this(nameA, engineA, nameB, engineB, timePerMove, DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    public Tournament(String nameA, Supplier<AI> engineA, String nameB, Supplier<AI> engineB,
+                      Duration timePerMove, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.nameA = nameA;
+        this.nameB = nameB;
+        this.engineA = engineA;
+        this.engineB = engineB;
+        this.timePerMove = timePerMove;
+
+        engines = new ThreadLocal<AI[]>() {
+            @Override
+            protected AI[] initialValue() {
+                return new AI[] {Tournament.this.engineA.get(), Tournament.this.engineB.get()};
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        String nameA = args.length > 1 ? args[1] : DEFAULT_ENGINE_A;
+        String nameB = args.length > 2 ? args[2] : DEFAULT_ENGINE_B;
+        int milliseconds = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int openingPlies = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_OPENING_PLIES;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        String[] size = (args.length > 6 ? args[6] : DEFAULT_SIZE + "x" + DEFAULT_SIZE).split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+
+        Tournament tournament = new Tournament(nameA, engine(nameA, width, height),
+                nameB, engine(nameB, width, height),
+                milliseconds > 0 ? Duration.ofMillis(milliseconds) : null, width, height);
+
+        long start = System.nanoTime();
+        tournament.play(openings((games + 1) / 2, openingPlies, width, height), threads);
+        System.out.printf("%nfinished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+        tournament.report();
+    }
+
+    /**
+     * engine factory for a name like alphabeta:utility
+     */
+    public static Supplier<AI> engine(String name) {
+        return engine(name, DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    /**
+     * the same for a board of the given size; a heuristic that can't
+     * evaluate that size is refused
+     */
+    public static Supplier<AI> engine(String name, int width, int height) {
+        String[] parts = name.split(":");
+        final String search = parts[0];
+        final String heuristic = parts.length > 1 ? parts[1] : "utility";
+
+        final int searchThreads = parallelThreads(search);
+        if (!search.equals("minimax") && !search.equals("alphabeta")
+                && !search.equals("pvs") && !search.equals("mtdf") && searchThreads < 1)
+            throw new IllegalArgumentException("Unknown engine: " + name);
+        if (!heuristic.equals("utility") && !heuristic.equals("pieces")
+                && !heuristic.equals("pattern") && !heuristic.equals("stability"))
+            throw new IllegalArgumentException("Unknown engine: " + name);
+        if (heuristic.equals("pattern") && (width != BitBoard.SIZE || height != BitBoard.SIZE))
+            throw new IllegalArgumentException(name + ": " + HeuristicPattern.ERR_BOARD_SIZE);
+
+        return new Supplier<AI>() {
+            @Override
+            public AI get() {
+                AI ai;
+                if (search.equals("minimax"))
+                    ai = new MiniMaxAI();
+                else if (search.equals("alphabeta"))
+                    ai = new MiniMaxAlphaBetaAI();
+                else if (search.equals("pvs"))
+                    ai = new PrincipalVariationAI(PrincipalVariationAI.Mode.PVS);
+                else if (searchThreads > 0)
+                    ai = new ParallelAlphaBetaAI(searchThreads);
+                else
+                    ai = new PrincipalVariationAI(PrincipalVariationAI.Mode.MTDF);
+
+                HeuristicStrategy strategy;
+                if (heuristic.equals("pieces"))
+                    strategy = new HeuristicPieceCounter();
+                else if (heuristic.equals("pattern"))
+                    strategy = new HeuristicPattern(Paths.get(HeuristicPattern.DEFAULT_FILE));
+                else if (heuristic.equals("stability"))
+                    strategy = new HeuristicStability();
+                else
+                    strategy = new HeuristicUtility();
+                ai.setStrategy(strategy);
+                return ai;
+            }
+        };
+    }
+
+    /**
+     * number of threads of a parallel<N> engine, 0 for any other name
+     */
+    private static int parallelThreads(String search) {
+        if (!search.matches("parallel[0-9]+"))
+            return 0;
+        return Integer.parseInt(search.substring("parallel".length()));
+    }
+
+    /**
+     * distinct positions after the given number of random moves, as the
+     * squares played from the starting position
+     */
+    public static List<int[]> openings(int count, int plies) {
+        return openings(count, plies, DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    /**
+     * the same on a board of the given size; boards larger than 8 by 8
+     * tell positions apart by hash, without reducing symmetric ones
+     */
+    public static List<int[]> openings(int count, int plies, int width, int height) {
+        List<int[]> openings = new ArrayList<int[]>();
+        Set<Long> seen = new HashSet<Long>();
+        Random random = new Random(SEED);
+        int[] moves = new int[Board.MAX_SQUARES];
+
+        // there may be fewer distinct openings than asked for
+        for (int tries = 0; openings.size() < count && tries < 100 * count; tries++) {
+            GameState game = new GameState(width, height);
+            int[] opening = new int[plies];
+            for (int ply = 0; ply < plies && game.isRunning(); ply++) {
+                opening[ply] = moves[random.nextInt(game.generateMoves(moves))];
+                game.makeMove(opening[ply]);
+            }
+
+            if (game.isRunning() && seen.add(key(game)))
+                openings.add(opening);
+        }
+
+        if (openings.isEmpty() && count > 0)
+            throw new IllegalArgumentException("No opening of " + plies + " plies on a "
+                    + width + "x" + height + " board");
+
+        // repeat them if there are not enough
+        for (int i = 0; openings.size() < count; i++)
+            openings.add(openings.get(i));
+
+        return openings;
+    }
+
+    /**
+     * same key for positions that are the same up to symmetry
+     */
+    private static long key(GameState game) {
+        if (game.getBoard().isWide())
+            return game.getHash();
+
+        NarrowBoard board = (NarrowBoard)game.getBoard();
+        long black = board.getPieces(Field.BLACK);
+        long white = board.getPieces(Field.WHITE);
+        long holes = board.getHoles();
+        Field player = game.getCurrentPlayer();
+        int symmetry = OpeningBook.canonicalSymmetry(black, white, holes, player);
+        return OpeningBook.key(black, white, holes, player, symmetry);
+    }
+
+    /**
+     * play every opening twice, with swapped colours
+     */
+    public void play(List<int[]> openings, int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> pairs = new ArrayList<Future<Void>>();
+
+        try {
+            for (final int[] opening : openings) {
+                pairs.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        AI[] ai = engines.get();
+                        playGame(opening, ai[0], ai[1], true);
+                        playGame(opening, ai[1], ai[0], false);
+                        return null;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < pairs.size(); i++) {
+                pairs.get(i).get();
+                if ((i + 1) % PROGRESS_INTERVAL == 0)
+                    printProgress(2 * (i + 1));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * play one game and add it to the totals
+     *
+     * @param blackIsA: whether the black engine is engine a
+     */
+    private void playGame(int[] opening, AI black, AI white, boolean blackIsA) throws Exception {
+        GameState game = new GameState(width, height);
+        for (int square : opening)
+            game.makeMove(square);
+
+        long[] gameMoves = new long[2];
+        long[] gameNanos = new long[2];
+        long[] gameNodes = new long[2];
+        Field forfeit = null;
+
+        while (game.isRunning()) {
+            Field player = game.getCurrentPlayer();
+            AI ai = (player == Field.BLACK) ? black : white;
+            int engine = (player == Field.BLACK) == blackIsA ? 0 : 1;
+
+            long start = System.nanoTime();
+            Position move = (timePerMove != null) ? ai.selectMove(game, timePerMove) : ai.selectMove(game);
+            gameNanos[engine] += System.nanoTime() - start;
+            gameMoves[engine]++;
+            gameNodes[engine] += ai.getNumOfPositionsVisitedLastMove();
+
+            if (move == null || game.move(move) == -1) {
+                forfeit = player;
+                break;
+            }
+        }
+
+        int[] score = game.getScore();
+        int blackResult;
+        if (forfeit != null)
+            blackResult = (forfeit == Field.BLACK) ? -1 : 1;
+        else
+            blackResult = Integer.signum(score[0] - score[1]);
+        int resultA = blackIsA ? blackResult : -blackResult;
+
+        synchronized (this) {
+            if (resultA > 0)
+                wins++;
+            else if (resultA < 0)
+                losses++;
+            else
+                draws++;
+
+            for (int engine = 0; engine < 2; engine++) {
+                moves[engine] += gameMoves[engine];
+                nanos[engine] += gameNanos[engine];
+                nodes[engine] += gameNodes[engine];
+            }
+        }
+    }
+
+    private synchronized void printProgress(int games) {
+        System.out.printf("%d games: +%d =%d -%d%n", games, wins, draws, losses);
+    }
+
+    public synchronized void report() {
+        int games = wins + draws + losses;
+        double score = (wins + 0.5 * draws) / games;
+
+        // standard error of the mean score per game
+        double deviation = Math.sqrt((wins * (1 - score) * (1 - score)
+                + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / games);
+        double error = deviation / Math.sqrt(games);
+
+        System.out.printf("%s vs %s: +%d =%d -%d in %d games%n", nameA, nameB, wins, draws, losses, games);
+        System.out.printf("score %.1f%% +- %.1f%%%n", 100 * score, 100 * Z * error);
+        System.out.printf("elo difference %.1f [%.1f, %.1f]%n",
+                elo(score), elo(score - Z * error), elo(score + Z * error));
+
+        String[] names = {nameA, nameB};
+        for (int engine = 0; engine < 2; engine++) {
+            System.out.printf("%s: %.2f ms and %d nodes per move%n", names[engine],
+                    nanos[engine] / 1e6 / Math.max(1, moves[engine]),
+                    nodes[engine] / Math.max(1, moves[engine]));
+        }
+    }
+
+    /**
+     * Elo difference for an expected score, infinite at 0 and 1
+     */
+    private static double elo(double score) {
+        if (score <= 0)
+            return Double.NEGATIVE_INFINITY;
+        if (score >= 1)
+            return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
@@ -0,0 +1,251 @@
+package tools;
+
+import AI.HeuristicPattern;
+
+import java.io.DataInputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tuner: fit the weights of HeuristicPattern to positions from SelfPlay
+ *
+ * The score of a position is the sum of one weight per pattern placement
+ * (see HeuristicPattern.features), and it should predict the final disc
+ * difference times SCALE. The weights are fitted to the squared error by
+ * mini-batch gradient descent.
+ *
+ * The positions file is streamed once per epoch: a reader thread cuts
+ * it into batches and the worker threads take them from a queue, so the
+ * positions never have to fit in memory. Every worker computes the
+ * gradient of its batch and adds it to the shared weights without
+ * locking; the batches touch few weights each, so they rarely collide.
+ * Every weight moves by the mean error of the positions that use it,
+ * which keeps weights of rare patterns from learning much slower than
+ * the common ones. One in HOLDOUT positions is only used to measure the
+ * error on positions that are not trained on.
+ *
+ * usage: Tuner [positions file] [weights file] [epochs] [threads] [phases]
+ */
+public class Tuner {
+
+    // score units per disc
+    private static final int SCALE = 100;
+
+    private static final int DEFAULT_EPOCHS = 10;
+    private static final int BATCH_SIZE = 4096;
+    private static final float LEARNING_RATE = 0.01f;
+    private static final float DECAY = 0.8f;
+    private static final int HOLDOUT = 20;
+
+    // the standard board, which is what SelfPlay plays on
+    private static final int SQUARES = 64;
+
+    private final int phases;
+    private final int features;
+
+    // all phases one after another, shared by the workers
+    private final float[] weights;
+
+    /**
+     * positions read from the file, training or held out
+     */
+    private static class Batch {
+        final long[] own = new long[BATCH_SIZE];
+        final long[] opp = new long[BATCH_SIZE];
+        final byte[] result = new byte[BATCH_SIZE];
+        int size;
+        boolean holdout;
+    }
+
+    private static final Batch END = new Batch();
+
+    /**
+     * gradient buffers of one worker; only the touched entries are
+     * cleared after a batch
+     */
+    private class Worker implements Callable<double[]> {
+        private final BlockingQueue<Batch> queue;
+        private final float learningRate;
+
+        private final float[] gradient = new float[weights.length];
+        private final int[] uses = new int[weights.length];
+        private final int[] touched;
+        private final int[] indices = new int[features];
+        private final int[][] batchIndices = new int[BATCH_SIZE][features];
+        private final float[] errors = new float[BATCH_SIZE];
+
+        Worker(BlockingQueue<Batch> queue, float learningRate) {
+            this.queue = queue;
+            this.learningRate = learningRate;
+            touched = new int[BATCH_SIZE * features];
+        }
+
+        /**
+         * @return squared error sum and count of training and held out positions
+         */
+        @Override
+        public double[] call() throws Exception {
+            double[] totals = new double[4];
+
+            for (Batch batch = queue.take(); batch != END; batch = queue.take()) {
+                for (int i = 0; i < batch.size; i++) {
+                    int offset = phase(batch.own[i], batch.opp[i]) * HeuristicPattern.TABLE_SIZE;
+                    HeuristicPattern.features(batch.own[i], batch.opp[i], indices);
+
+                    float score = 0;
+                    for (int f = 0; f < features; f++) {
+                        batchIndices[i][f] = offset + indices[f];
+                        score += weights[offset + indices[f]];
+                    }
+                    errors[i] = SCALE * batch.result[i] - score;
+                }
+
+                int total = batch.holdout ? 2 : 0;
+                for (int i = 0; i < batch.size; i++)
+                    totals[total] += errors[i] * errors[i];
+                totals[total + 1] += batch.size;
+
+                if (!batch.holdout)
+                    train(batch.size);
+            }
+
+            return totals;
+        }
+
+        private void train(int size) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                for (int f = 0; f < features; f++) {
+                    int index = batchIndices[i][f];
+                    if (uses[index]++ == 0)
+                        touched[count++] = index;
+                    gradient[index] += errors[i];
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                int index = touched[i];
+                weights[index] += learningRate * gradient[index] / uses[index];
+                gradient[index] = 0;
+                uses[index] = 0;
+            }
+        }
+    }
+
+    public Tuner(int phases) {
+        this.phases = phases;
+        features = HeuristicPattern.getNumOfFeatures();
+        weights = new float[phases * HeuristicPattern.TABLE_SIZE];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path positions = Paths.get(args.length > 0 ? args[0] : "positions.bin");
+        Path output = Paths.get(args.length > 1 ? args[1] : HeuristicPattern.DEFAULT_FILE);
+        int epochs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_EPOCHS;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int phases = args.length > 4 ? Integer.parseInt(args[4]) : HeuristicPattern.DEFAULT_PHASES;
+
+        Tuner tuner = new Tuner(phases);
+        float learningRate = LEARNING_RATE;
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long start = System.nanoTime();
+            double[] errors = tuner.epoch(positions, threads, learningRate);
+            System.out.printf("epoch %d: error %.2f discs, held out %.2f discs, %.1f s%n", epoch,
+                    Math.sqrt(errors[0]) / SCALE, Math.sqrt(errors[1]) / SCALE,
+                    (System.nanoTime() - start) / 1e9);
+            learningRate *= DECAY;
+        }
+
+        HeuristicPattern.writeWeights(output, tuner.getWeights());
+        System.out.println("Wrote weights to " + output);
+    }
+
+    /**
+     * one pass over the positions file
+     *
+     * @return mean squared error of the training and the held out positions
+     */
+    public double[] epoch(Path positions, int threads, float learningRate) throws Exception {
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(2 * threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<double[]>> workers = new ArrayList<Future<double[]>>();
+
+        try {
+            for (int i = 0; i < threads; i++)
+                workers.add(pool.submit(new Worker(queue, learningRate)));
+
+            read(positions, queue);
+            for (int i = 0; i < threads; i++)
+                queue.put(END);
+
+            double[] totals = new double[4];
+            for (Future<double[]> worker : workers) {
+                double[] result = worker.get();
+                for (int i = 0; i < totals.length; i++)
+                    totals[i] += result[i];
+            }
+
+            return new double[] {totals[0] / Math.max(1, totals[1]), totals[2] / Math.max(1, totals[3])};
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * cut the file into batches, the held out positions in batches of their own
+     */
+    private void read(Path positions, BlockingQueue<Batch> queue) throws Exception {
+        try (DataInputStream in = PositionFile.open(positions)) {
+            Batch training = new Batch();
+            Batch holdout = new Batch();
+            holdout.holdout = true;
+
+            for (long record = 0; ; record++) {
+                Batch batch = (record % HOLDOUT == 0) ? holdout : training;
+                if (!PositionFile.read(in, batch.own, batch.opp, batch.result, batch.size))
+                    break;
+
+                if (++batch.size == BATCH_SIZE) {
+                    queue.put(batch);
+                    if (batch == holdout) {
+                        holdout = new Batch();
+                        holdout.holdout = true;
+                    } else {
+                        training = new Batch();
+                    }
+                }
+            }
+
+            if (training.size > 0)
+                queue.put(training);
+            if (holdout.size > 0)
+                queue.put(holdout);
+        }
+    }
+
+    private int phase(long own, long opp) {
+        return HeuristicPattern.phase(Long.bitCount(own | opp), SQUARES, phases);
+    }
+
+    /**
+     * the fitted weights, rounded to the shorts of the weights file
+     */
+    public short[][] getWeights() {
+        short[][] rounded = new short[phases][HeuristicPattern.TABLE_SIZE];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int i = 0; i < HeuristicPattern.TABLE_SIZE; i++) {
+                float weight = weights[phase * HeuristicPattern.TABLE_SIZE + i];
+                rounded[phase][i] = (short)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(weight)));
+            }
+        }
+        return rounded;
+    }
+}